@@ -0,0 +1,112 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Fixtures shared by the benchmarks: alphabets of any size, random
+ *  wirings and messages, all from fixed seeds so runs are comparable.
+ *  @author Andrew Tom
+ */
+final class BenchUtils {
+
+    /** Seed for every random fixture. */
+    static final long SEED = 61L;
+
+    /** Not instantiable. */
+    private BenchUtils() {
+    }
+
+    /** Return an alphabet of SIZE characters: the upper-case letters
+     *  when SIZE is 26, and otherwise SIZE consecutive characters
+     *  starting at U+0100. */
+    static Alphabet alphabet(int size) {
+        if (size == 26) {
+            return new Alphabet();
+        }
+        char[] chars = new char[size];
+        for (int x = 0; x < size; x += 1) {
+            chars[x] = (char) (0x100 + x);
+        }
+        return new Alphabet(new String(chars));
+    }
+
+    /** Return a random permutation of ALPHA drawn from RANDOM. */
+    static Permutation permutation(Alphabet alpha, Random random) {
+        int[] table = new int[alpha.size()];
+        for (int x = 0; x < table.length; x += 1) {
+            table[x] = x;
+        }
+        shuffle(table, random);
+        return new Permutation(alpha, table);
+    }
+
+    /** Return a random derangement of ALPHA, of even size, made of
+     *  swaps, drawn from RANDOM. */
+    static Permutation reflection(Alphabet alpha, Random random) {
+        int[] order = new int[alpha.size()];
+        for (int x = 0; x < order.length; x += 1) {
+            order[x] = x;
+        }
+        shuffle(order, random);
+        int[] table = new int[order.length];
+        for (int x = 0; x + 1 < order.length; x += 2) {
+            table[order[x]] = order[x + 1];
+            table[order[x + 1]] = order[x];
+        }
+        return new Permutation(alpha, table);
+    }
+
+    /** Return a spec over an alphabet of SIZE characters with 5 slots,
+     *  3 pawls, moving rotors M1-M3 (one notch each), fixed rotor F and
+     *  reflector R. */
+    static MachineSpec spec(int size) {
+        Alphabet alpha = alphabet(size);
+        Random random = new Random(SEED);
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        for (int r = 1; r <= 3; r += 1) {
+            rotors.add(new MovingRotor("M" + r, permutation(alpha, random),
+                                       String.valueOf(alpha.toChar(
+                                           random.nextInt(size)))));
+        }
+        rotors.add(new FixedRotor("F", permutation(alpha, random)));
+        rotors.add(new Reflector("R", reflection(alpha, random)));
+        return new MachineSpec(alpha, 5, 3, rotors);
+    }
+
+    /** Return the setting line for spec(SIZE) with every rotor at the
+     *  first character of its alphabet. */
+    static String setting(int size) {
+        char first = alphabet(size).toChar(0);
+        return "* R F M1 M2 M3 " + first + first + first + first;
+    }
+
+    /** Return a random message of LENGTH characters of ALPHA. */
+    static String message(Alphabet alpha, int length) {
+        Random random = new Random(SEED);
+        char[] msg = new char[length];
+        for (int x = 0; x < length; x += 1) {
+            msg[x] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(msg);
+    }
+
+    /** Return COUNT random indices below SIZE. */
+    static int[] indices(int size, int count) {
+        Random random = new Random(SEED);
+        int[] result = new int[count];
+        for (int x = 0; x < count; x += 1) {
+            result[x] = random.nextInt(size);
+        }
+        return result;
+    }
+
+    /** Shuffle A with RANDOM. */
+    private static void shuffle(int[] a, Random random) {
+        for (int x = a.length - 1; x > 0; x -= 1) {
+            int y = random.nextInt(x + 1);
+            int t = a[x];
+            a[x] = a[y];
+            a[y] = t;
+        }
+    }
+}
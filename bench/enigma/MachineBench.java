@@ -0,0 +1,71 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Machine.advanceMachine and Machine.convert(String) at
+ *  several alphabet sizes and message lengths.
+ *  @author Andrew Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MachineBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    public int size;
+
+    /** Set up a machine. */
+    @Setup
+    public void setUp() {
+        _spec = BenchUtils.spec(size);
+        _machine = _spec.newMachine(BenchUtils.setting(size));
+    }
+
+    /** A message to convert; only the convert benchmark varies its
+     *  length. */
+    @State(Scope.Thread)
+    public static class Message {
+
+        /** Message length. */
+        @Param({ "16", "1024", "65536" })
+        public int length;
+
+        /** Make a message of LENGTH characters for the machine in
+         *  BENCH. */
+        @Setup
+        public void setUp(MachineBench bench) {
+            text = BenchUtils.message(bench._spec.alphabet(), length);
+        }
+
+        /** The message. */
+        String text;
+    }
+
+    /** Step the rotors once. */
+    @Benchmark
+    public void advanceMachine() {
+        _machine.advanceMachine();
+    }
+
+    /** Convert all of MSG and return the result. */
+    @Benchmark
+    public String convert(Message msg) {
+        return _machine.convert(msg.text);
+    }
+
+    /** Configuration of the machine under test. */
+    private MachineSpec _spec;
+
+    /** Machine under test. */
+    private Machine _machine;
+}
@@ -0,0 +1,125 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Benchmarks of Main: reading a configuration (from text, and from a
+ *  compiled image), applying a setting line, and complete runs over the
+ *  golden cases in testing/correct.  The golden directory is taken from
+ *  the system property enigma.testing, by default ../testing/correct.
+ *  @author Andrew Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MainBench {
+
+    /** Golden case: CASE.in with CASE.conf, or default.conf. */
+    @Param({ "alldub", "allrotors", "junkconf", "onNotch", "plugjunk",
+             "rings", "riptide", "samelineconf", "vi", "vii", "viii" })
+    public String golden;
+
+    /** "text" to parse the configuration, "image" to load a compiled
+     *  image of it. */
+    @Param({ "text", "image" })
+    public String config;
+
+    /** Copy the golden case to a scratch directory, compiling an image
+     *  of its configuration if wanted. */
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        Path dir = Path.of(System.getProperty("enigma.testing",
+                                              "../testing/correct"));
+        Path conf = dir.resolve(golden + ".conf");
+        if (!Files.exists(conf)) {
+            conf = dir.resolve("default.conf");
+        }
+        _scratch = Files.createTempDirectory("enigma-bench");
+        _conf = _scratch.resolve("machine.conf").toString();
+        _input = _scratch.resolve("input.in").toString();
+        _output = _scratch.resolve("output.out").toString();
+        Files.copy(conf, Path.of(_conf), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(dir.resolve(golden + ".in"), Path.of(_input),
+                   StandardCopyOption.REPLACE_EXISTING);
+        if (config.equals("image")) {
+            ConfigImage.compile(_conf, ConfigImage.imageName(_conf));
+        }
+        _setting = firstSetting(_input);
+        _configured = new Main(new String[] { _conf });
+        _machine = _configured.readConfig();
+    }
+
+    /** Close _configured and remove the scratch directory. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        _configured.close();
+        for (File f : _scratch.toFile().listFiles()) {
+            f.delete();
+        }
+        Files.delete(_scratch);
+    }
+
+    /** Read the configuration and return the new machine.  Each call
+     *  reads the file (or image) afresh, so one Main serves every
+     *  invocation. */
+    @Benchmark
+    public Machine readConfig() {
+        return _configured.readConfig();
+    }
+
+    /** Apply the first setting line of the golden input. */
+    @Benchmark
+    public Machine setUp() {
+        _configured.setUp(_machine, _setting);
+        return _machine;
+    }
+
+    /** Run Main over the golden input, as the command line would, but
+     *  letting errors propagate instead of exiting. */
+    @Benchmark
+    public void fullRun() {
+        try (Main main = new Main(new String[] { _conf, _input, _output })) {
+            main.process();
+        }
+    }
+
+    /** Return the first setting line of the file named NAME. */
+    private static String firstSetting(String name) throws IOException {
+        for (String line : Files.readAllLines(Path.of(name))) {
+            if (line.startsWith("*")) {
+                return line;
+            }
+        }
+        throw new IOException("no setting line in " + name);
+    }
+
+    /** Directory holding copies of the golden files. */
+    private Path _scratch;
+
+    /** Names of the copied configuration, input and output files. */
+    private String _conf, _input, _output;
+
+    /** First setting line of the input. */
+    private String _setting;
+
+    /** A Main that has read its configuration, and its machine. */
+    private Main _configured;
+
+    /** Machine configured by _configured. */
+    private Machine _machine;
+}
@@ -0,0 +1,91 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of Permutation.permute and Permutation.invert and of
+ *  Rotor.convertForward and Rotor.convertBackward, over a fixed batch of
+ *  random indices.
+ *  @author Andrew Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PermutationBench {
+
+    /** Indices converted per invocation. */
+    static final int BATCH = 1024;
+
+    /** Alphabet size. */
+    @Param({ "26", "96", "1024" })
+    public int size;
+
+    /** Set up the wiring and indices. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = BenchUtils.alphabet(size);
+        _perm = BenchUtils.permutation(alpha, new Random(BenchUtils.SEED));
+        _rotor = new MovingRotor("M", _perm,
+                                 String.valueOf(alpha.toChar(0)));
+        _rotor.set(size / 3);
+        _rotor.ringSetter(size / 5);
+        _indices = BenchUtils.indices(size, BATCH);
+    }
+
+    /** Permute a batch, sending results to BH. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void permute(Blackhole bh) {
+        for (int p : _indices) {
+            bh.consume(_perm.permute(p));
+        }
+    }
+
+    /** Invert a batch, sending results to BH. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void invert(Blackhole bh) {
+        for (int c : _indices) {
+            bh.consume(_perm.invert(c));
+        }
+    }
+
+    /** Convert a batch forward through a rotor, sending results to BH. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void convertForward(Blackhole bh) {
+        for (int p : _indices) {
+            bh.consume(_rotor.convertForward(p));
+        }
+    }
+
+    /** Convert a batch backward through a rotor, sending results to
+     *  BH. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void convertBackward(Blackhole bh) {
+        for (int e : _indices) {
+            bh.consume(_rotor.convertBackward(e));
+        }
+    }
+
+    /** Wiring under test. */
+    private Permutation _perm;
+
+    /** Rotor with that wiring, at a setting and ring setting off 0. */
+    private Rotor _rotor;
+
+    /** Indices to convert. */
+    private int[] _indices;
+}
@@ -0,0 +1,100 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Compares StateBatch with one Machine per start state when the same
+ *  ciphertext is run from many start positions.  Each benchmark
+ *  evaluates every start state once.
+ *  @author Andrew Tom
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StateBatchBench {
+
+    /** Alphabet size. */
+    @Param({ "26", "96" })
+    public int size;
+
+    /** Number of start states. */
+    @Param({ "64", "1024" })
+    public int lanes;
+
+    /** Ciphertext length. */
+    @Param({ "200" })
+    public int length;
+
+    /** Whether the batch may use the Vector API (when the JVM has
+     *  jdk.incubator.vector, as 'make bench' arranges). */
+    @Param({ "true", "false" })
+    public boolean vector;
+
+    /** Build the start states and ciphertext. */
+    @Setup
+    public void setUp() {
+        MachineSpec spec = BenchUtils.spec(size);
+        Alphabet alpha = spec.alphabet();
+        String first = BenchUtils.setting(size);
+        _machines = new Machine[lanes];
+        _batch = new StateBatch(spec, lanes, vector);
+        _settings = new MachineSpec.Setting[lanes];
+        for (int l = 0; l < lanes; l += 1) {
+            String positions = "" + alpha.toChar(l % size)
+                + alpha.toChar((l / size) % size) + alpha.toChar(l % 7)
+                + alpha.toChar(l % 11);
+            _settings[l] = spec.parse(first.substring(0, first.length() - 4)
+                                      + positions);
+            _machines[l] = spec.newMachine();
+        }
+        _message = BenchUtils.message(alpha, length);
+        _in = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            _in[i] = alpha.toInt(_message.charAt(i));
+        }
+        _counts = new int[lanes * size];
+    }
+
+    /** Decrypt from every start state with one Machine each. */
+    @Benchmark
+    public int machines() {
+        int h = 0;
+        for (int l = 0; l < lanes; l += 1) {
+            _settings[l].applyTo(_machines[l]);
+            h += _machines[l].convert(_message).hashCode();
+        }
+        return h;
+    }
+
+    /** Decrypt from every start state in one StateBatch, counting
+     *  letter frequencies per state. */
+    @Benchmark
+    public int[] batch() {
+        for (int l = 0; l < lanes; l += 1) {
+            _batch.set(l, _settings[l]);
+        }
+        _batch.convert(_in, length, null, _counts);
+        return _counts;
+    }
+
+    /** One Machine per start state. */
+    private Machine[] _machines;
+    /** All start states together. */
+    private StateBatch _batch;
+    /** Parsed start states. */
+    private MachineSpec.Setting[] _settings;
+    /** Ciphertext. */
+    private String _message;
+    /** Ciphertext as alphabet indices. */
+    private int[] _in;
+    /** Letter counts per state. */
+    private int[] _counts;
+}
@@ -103,4 +103,21 @@ public class AllRotorTests {
 
         assertEquals(r.setting(), 0);
     }
+
+    @Test
+    public void ringOffsetTest() {
+        String cycles = "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)";
+        Permutation pleep = new Permutation(cycles, new Alphabet());
+        Rotor r = new Rotor("W", pleep);
+        Rotor q = new Rotor("Q", pleep);
+
+        r.set(3);
+        r.ringSetter(2);
+        q.set(1);
+        for (int p = 0; p < 26; p += 1) {
+            assertEquals(q.convertForward(p), r.convertForward(p));
+            assertEquals(q.convertBackward(p), r.convertBackward(p));
+            assertEquals(p, r.convertBackward(r.convertForward(p)));
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package enigma;
 
-import java.util.Hashtable;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
@@ -9,37 +8,56 @@ import java.util.HashSet;
  */
 class Alphabet {
 
+    /** Largest code-point span (max char - min char + 1) that gets a
+     *  dense index table; wider alphabets use the hashed table. */
+    static final int DENSE_SPAN_LIMIT = 1 << 12;
+
     /** the alphabetstring var. */
     private String _alphabetString;
-    /** hashtable int object inttochar. */
-    private Hashtable<Integer, Object> _intToCharHash =
-            new Hashtable<Integer, Object>();
-    /** hashtable object int chartoint. */
-    private Hashtable<Object, Integer> _charToIntHash =
-            new Hashtable<Object, Integer>();
+    /** Characters of the alphabet, indexed by position. */
+    private char[] _chars;
+    /** Smallest character in the alphabet (dense mode offset). */
+    private int _minChar;
+    /** Dense mode: position of character _minChar + i, or -1.  Null
+     *  when the alphabet is sparse. */
+    private int[] _dense;
+    /** Sparse mode: open-addressed keys (chars), -1 for empty slots. */
+    private int[] _hashKeys;
+    /** Sparse mode: positions matching _hashKeys. */
+    private int[] _hashVals;
 
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-
-        HashSet<Object> alphaDupe = new HashSet<Object>();
         _alphabetString = chars;
+        _chars = chars.toCharArray();
 
-        for (int letterPos = 0; letterPos < chars.length(); letterPos += 1) {
-
-            char cur = chars.charAt(letterPos);
+        int min = Character.MAX_VALUE, max = 0;
+        for (char cur : _chars) {
             if (cur == '*' || cur == '(' || cur == ')') {
                 throw EnigmaException.error("Bad chars in alphabet boo!");
             }
+            min = Math.min(min, cur);
+            max = Math.max(max, cur);
+        }
 
-            alphaDupe.add(chars.charAt(letterPos));
-
-            _intToCharHash.put(letterPos, chars.charAt(letterPos));
-            _charToIntHash.put(chars.charAt(letterPos), letterPos);
+        if (_chars.length == 0) {
+            _dense = new int[0];
+        } else if (max - min < DENSE_SPAN_LIMIT) {
+            _minChar = min;
+            _dense = new int[max - min + 1];
+            Arrays.fill(_dense, -1);
+        } else {
+            int cap = Integer.highestOneBit(_chars.length * 2 - 1) << 1;
+            _hashKeys = new int[cap];
+            _hashVals = new int[cap];
+            Arrays.fill(_hashKeys, -1);
         }
 
-        if (alphaDupe.size() < chars.length()) {
-            throw EnigmaException.error("Duplicate elements in Alphabet");
+        for (int letterPos = 0; letterPos < _chars.length; letterPos += 1) {
+            if (!insert(_chars[letterPos], letterPos)) {
+                throw EnigmaException.error("Duplicate elements in Alphabet");
+            }
         }
     }
 
@@ -47,18 +65,61 @@ class Alphabet {
     Alphabet() {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
-    /** intotocharhash table for conversions.
-     * @return intochar hash table
+
+    /** Record that CH is at position POS.
+     * @return false if CH was already present
      * */
-    public Hashtable<Integer, Object> getIntToCharHash() {
-        return _intToCharHash;
+    private boolean insert(char ch, int pos) {
+        if (_dense != null) {
+            int slot = ch - _minChar;
+            if (_dense[slot] >= 0) {
+                return false;
+            }
+            _dense[slot] = pos;
+            return true;
+        }
+        int mask = _hashKeys.length - 1;
+        int slot = mix(ch) & mask;
+        while (_hashKeys[slot] >= 0) {
+            if (_hashKeys[slot] == ch) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        _hashKeys[slot] = ch;
+        _hashVals[slot] = pos;
+        return true;
     }
-    /** chartointhash for conversions!.
-     * @return chartoint hashtable
+
+    /** Spread the bits of CH for the hashed table.
+     * @return the mixed hash
      * */
-    public Hashtable<Object, Integer> getCharToIntHash() {
-        return _charToIntHash;
+    private static int mix(int ch) {
+        int h = ch * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Return the position of CH, or -1 if it is not in the alphabet. */
+    int indexOf(char ch) {
+        if (_dense != null) {
+            int slot = ch - _minChar;
+            if (slot < 0 || slot >= _dense.length) {
+                return -1;
+            }
+            return _dense[slot];
+        }
+        int mask = _hashKeys.length - 1;
+        int slot = mix(ch) & mask;
+        int key;
+        while ((key = _hashKeys[slot]) >= 0) {
+            if (key == ch) {
+                return _hashVals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
     }
+
     /** alphabet string returner method.
      * @return alphabetstring in string form
      * */
@@ -70,25 +131,28 @@ class Alphabet {
      * @return int of the size of the alphabet
      */
     int size() {
-        return _alphabetString.length();
+        return _chars.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        String charToString = Character.toString(ch);
-        return _alphabetString.contains(charToString);
+        return indexOf(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
     char toChar(int index) {
-        return (char) _intToCharHash.get(index);
+        return _chars[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        return _charToIntHash.get(ch);
+        int index = indexOf(ch);
+        if (index < 0) {
+            throw EnigmaException.error("Char not in Alphabet");
+        }
+        return index;
     }
 
 }
@@ -41,4 +41,21 @@ public class AlphabetTest {
 
     }
 
+    @Test
+    public void sparseAlphabet() {
+        String chars = "A\u4e00\uffee";
+        Alphabet alpha = new Alphabet(chars);
+
+        assertEquals(1, alpha.toInt('\u4e00'));
+        assertEquals('\uffee', alpha.toChar(2));
+        assertTrue(alpha.contains('A'));
+        assertFalse(alpha.contains('B'));
+        assertEquals(-1, alpha.indexOf('B'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void sparseDuplicate() {
+        new Alphabet("A\u4e00A");
+    }
+
 }
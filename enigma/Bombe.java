@@ -0,0 +1,363 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A crib-based key search in the manner of the Turing-Welchman bombe.
+ *  A crib is a stretch of known plaintext lined up with its ciphertext.
+ *  Each crib position i links plaintext letter P and ciphertext letter
+ *  C through the scrambler S (the rotors without the plugboard) at that
+ *  position: if the plugboard sends P to x, it sends C to S(x).  These
+ *  links form the "menu".
+ *
+ *  For every key of a KeySpace (rotor arrangement and start
+ *  positions), the scramblers at the crib positions are computed with
+ *  MachineState, which steps exactly as Machine.advanceMachine() does.
+ *  Then, for each hypothesis "the plugboard sends the test letter T to
+ *  g", the consequences are propagated through the menu and through the
+ *  diagonal board (the plugboard is an involution, so L->x implies
+ *  x->L).  The diagram is one bitmask row per letter; a hypothesis dies
+ *  as soon as some letter would have two plugboard partners.  Keys with
+ *  a surviving hypothesis are stops, reported with the plug pairs the
+ *  hypothesis implies.
+ *
+ *  Keys are split across a ForkJoinPool as in KeySearch, and the run can
+ *  be watched with searched() and stopped with cancel().  Alphabets of
+ *  up to 64 characters are supported.
+ *  @author Andrew Tom
+ */
+final class Bombe {
+
+    /** Keys below which a range is not split further. */
+    static final int LEAF = 1 << 12;
+
+    /** Most stops kept; later ones are only counted. */
+    static final int MAX_STOPS = 1 << 16;
+
+    /** A key that survived the menu. */
+    static final class Stop {
+
+        /** The stop at key INDEX whose setting line, including the
+         *  implied plug pairs, is SETTING. */
+        Stop(long index, String setting) {
+            _index = index;
+            _setting = setting;
+        }
+
+        /** Return the key number. */
+        long index() {
+            return _index;
+        }
+
+        /** Return the setting line, with the implied plug pairs as its
+         *  plugboard. */
+        String setting() {
+            return _setting;
+        }
+
+        @Override
+        public String toString() {
+            return _setting;
+        }
+
+        /** Key number. */
+        private final long _index;
+        /** Setting line. */
+        private final String _setting;
+    }
+
+    /** A bombe over the keys of SPEC with ring settings RINGS (see
+     *  KeySpace) for the crib CRIB, whose encryption CIPHER starts
+     *  OFFSET characters into the message. */
+    Bombe(MachineSpec spec, String crib, String cipher, int offset,
+          String rings) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        if (_size > Long.SIZE) {
+            throw EnigmaException.error("bombe alphabet too large");
+        }
+        if (crib.isEmpty()) {
+            throw EnigmaException.error("empty crib");
+        }
+        if (crib.length() != cipher.length()) {
+            throw EnigmaException.error("crib and ciphertext differ in "
+                                        + "length");
+        }
+        if (offset < 0) {
+            throw EnigmaException.error("Negative position");
+        }
+        _offset = offset;
+        _keys = new KeySpace(spec, rings);
+        _length = crib.length();
+        _plain = new int[_length];
+        _cipher = new int[_length];
+        int[] degree = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            _plain[i] = _alphabet.toInt(crib.charAt(i));
+            _cipher[i] = _alphabet.toInt(cipher.charAt(i));
+            if (_plain[i] == _cipher[i]) {
+                throw EnigmaException.error("crib letter %c encrypts to "
+                                            + "itself", crib.charAt(i));
+            }
+            degree[_plain[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        _links = new int[_size][];
+        int test = 0;
+        for (int c = 0; c < _size; c += 1) {
+            _links[c] = new int[degree[c]];
+            if (degree[c] > degree[test]) {
+                test = c;
+            }
+        }
+        _test = test;
+        int[] filled = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            _links[_plain[i]][filled[_plain[i]]++] = i;
+            _links[_cipher[i]][filled[_cipher[i]]++] = i;
+        }
+    }
+
+    /** Return the number of keys to test. */
+    long total() {
+        return _keys.size();
+    }
+
+    /** Return the number of keys tested so far. */
+    long searched() {
+        return _searched.sum();
+    }
+
+    /** Return the number of stops found so far, including any past
+     *  MAX_STOPS. */
+    long stopCount() {
+        return _stopCount.sum();
+    }
+
+    /** Stop the run soon; stops found so far are kept. */
+    void cancel() {
+        _cancelled = true;
+    }
+
+    /** Return true iff cancel() has been called. */
+    boolean cancelled() {
+        return _cancelled;
+    }
+
+    /** Test every key in POOL and return the stops, in key order. */
+    List<Stop> run(ForkJoinPool pool) {
+        pool.invoke(new Range(0, total()));
+        return stops();
+    }
+
+    /** Test every key in the common pool. */
+    List<Stop> run() {
+        return run(ForkJoinPool.commonPool());
+    }
+
+    /** Start testing in POOL and return the task, so that the caller
+     *  can poll searched() or cancel() while it runs.  Call stops()
+     *  after the task is done. */
+    ForkJoinTask<?> start(ForkJoinPool pool) {
+        return pool.submit(new Range(0, total()));
+    }
+
+    /** Return the stops found so far, in key order. */
+    List<Stop> stops() {
+        synchronized (_stops) {
+            ArrayList<Stop> result = new ArrayList<Stop>(_stops);
+            Collections.sort(result, Comparator.comparingLong(Stop::index));
+            return result;
+        }
+    }
+
+    /** Tests keys [lo, hi). */
+    private class Range extends RecursiveAction {
+
+        /** Test keys LO to HI - 1. */
+        Range(long lo, long hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_cancelled) {
+                return;
+            }
+            if (_hi - _lo > LEAF) {
+                long mid = (_lo + _hi) >>> 1;
+                invokeAll(new Range(_lo, mid), new Range(mid, _hi));
+                return;
+            }
+            Worker worker = new Worker();
+            long done = 0;
+            for (long k = _lo; k < _hi && !_cancelled; k += 1) {
+                worker.test(k);
+                done += 1;
+            }
+            _searched.add(done);
+        }
+
+        /** First key. */
+        private final long _lo;
+        /** Key past the last. */
+        private final long _hi;
+    }
+
+    /** Scratch space for testing keys, one per leaf Range. */
+    private class Worker {
+
+        /** Test key K, recording it if it stops. */
+        void test(long k) {
+            int[] arrangement = _keys.arrangement(k);
+            if (arrangement != _arrangement) {
+                RotorSpec[] slots = new RotorSpec[arrangement.length];
+                for (int x = 0; x < slots.length; x += 1) {
+                    slots[x] = _keys.library()[arrangement[x]];
+                }
+                _state = new MachineState(_spec, slots,
+                                          new int[slots.length],
+                                          _keys.rings().clone(),
+                                          new Permutation("", _alphabet));
+                _arrangement = arrangement;
+                _positions = new int[slots.length];
+            }
+            _keys.positions(k, _positions);
+            _state.setPositions(_positions);
+            _state.advance(_offset);
+            for (int i = 0; i < _length; i += 1) {
+                _state.advance();
+                for (int c = 0; c < _size; c += 1) {
+                    _scrambler[i * _size + c] = _state.route(c);
+                }
+            }
+            for (int g = 0; g < _size; g += 1) {
+                if (consistent(g)) {
+                    stop(k, _live);
+                }
+            }
+        }
+
+        /** Propagate the hypothesis that the test letter is plugged to G,
+         *  leaving the diagram in _live.  Return false if it leads to a
+         *  letter with two partners. */
+        private boolean consistent(int g) {
+            long[] live = _live;
+            for (int c = 0; c < _size; c += 1) {
+                live[c] = 0;
+            }
+            _head = 0;
+            _tail = 0;
+            if (!energize(_test, g)) {
+                return false;
+            }
+            while (_head < _tail) {
+                int wire = _queue[_head++];
+                int letter = wire / _size;
+                int partner = wire % _size;
+                if (!energize(partner, letter)) {
+                    return false;
+                }
+                for (int i : _links[letter]) {
+                    int other = _plain[i] == letter ? _cipher[i] : _plain[i];
+                    if (!energize(other, _scrambler[i * _size + partner])) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Mark that LETTER is plugged to PARTNER.  Return false if
+         *  LETTER already has a different partner. */
+        private boolean energize(int letter, int partner) {
+            long row = _live[letter];
+            long bit = 1L << partner;
+            if ((row & bit) != 0) {
+                return true;
+            }
+            if (row != 0) {
+                return false;
+            }
+            _live[letter] = bit;
+            _queue[_tail++] = letter * _size + partner;
+            return true;
+        }
+
+        /** Wiring at each crib position: crib position i sends c to
+         *  _scrambler[i * size + c]. */
+        private final int[] _scrambler = new int[_length * _size];
+        /** The diagram: bit x of _live[L] means L is plugged to x. */
+        private final long[] _live = new long[_size];
+        /** Wires energized but not yet propagated, as L * size + x. */
+        private final int[] _queue = new int[_size * _size];
+        /** Next wire to propagate. */
+        private int _head;
+        /** End of the queue. */
+        private int _tail;
+        /** Arrangement _state was built for. */
+        private int[] _arrangement;
+        /** State with that arrangement and no plugboard. */
+        private MachineState _state;
+        /** Start positions of the key being tested. */
+        private int[] _positions;
+    }
+
+    /** Record a stop at key K with diagram LIVE. */
+    private void stop(long k, long[] live) {
+        _stopCount.increment();
+        StringBuilder plugs = new StringBuilder();
+        for (int c = 0; c < _size; c += 1) {
+            if (live[c] != 0) {
+                int partner = Long.numberOfTrailingZeros(live[c]);
+                if (c < partner) {
+                    plugs.append(plugs.length() == 0 ? "(" : " (")
+                        .append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(partner)).append(')');
+                }
+            }
+        }
+        synchronized (_stops) {
+            if (_stops.size() < MAX_STOPS) {
+                _stops.add(new Stop(k, _keys.setting(k, plugs.toString())));
+            }
+        }
+    }
+
+    /** Spec whose keys are tested. */
+    private final MachineSpec _spec;
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Keys tested. */
+    private final KeySpace _keys;
+    /** Characters of the message before the crib. */
+    private final int _offset;
+    /** Crib length. */
+    private final int _length;
+    /** Crib plaintext as alphabet indices. */
+    private final int[] _plain;
+    /** Crib ciphertext as alphabet indices. */
+    private final int[] _cipher;
+    /** _links[c] lists the crib positions at which letter c appears. */
+    private final int[][] _links;
+    /** Letter on which hypotheses are made: the one with most links. */
+    private final int _test;
+    /** Keys tested. */
+    private final LongAdder _searched = new LongAdder();
+    /** Stops found. */
+    private final LongAdder _stopCount = new LongAdder();
+    /** Stops kept. */
+    private final ArrayList<Stop> _stops = new ArrayList<Stop>();
+    /** True once cancel() is called. */
+    private volatile boolean _cancelled;
+}
@@ -0,0 +1,125 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.KeySearchTest.PLAIN;
+import static enigma.KeySearchTest.smallSpec;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Andrew Tom
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Plugboard used to encrypt the test messages. */
+    static final String PLUGS = "(AT) (EZ) (QR) (HW) (OS)";
+
+    /** Return true iff every pair in the plugboard of SETTING, a stop's
+     *  setting line, is one of the pairs in PLUGS or a letter plugged to
+     *  itself. */
+    static boolean plugsAgree(String setting, String plugs) {
+        int start = setting.indexOf('(');
+        if (start < 0) {
+            return true;
+        }
+        Permutation truth = new Permutation(plugs, new Alphabet());
+        for (String pair : setting.substring(start).split(" ")) {
+            if (truth.permute(pair.charAt(1)) != pair.charAt(2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void findsKey() {
+        MachineSpec spec = smallSpec();
+        String key = "* B III I KQ";
+        String cipher = spec.newMachine(key + " " + PLUGS).convert(PLAIN);
+        int offset = 10;
+        int len = 30;
+        Bombe bombe = new Bombe(spec, PLAIN.substring(offset, offset + len),
+                                cipher.substring(offset, offset + len),
+                                offset, "");
+        assertEquals(6 * 26 * 26, bombe.total());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        List<Bombe.Stop> stops;
+        try {
+            stops = bombe.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(bombe.total(), bombe.searched());
+        assertTrue(stops.size() < 20);
+        boolean found = false;
+        for (Bombe.Stop stop : stops) {
+            if (stop.setting().startsWith(key + " (")
+                && plugsAgree(stop.setting(), PLUGS)) {
+                found = true;
+            }
+        }
+        assertTrue(found);
+        for (int x = 1; x < stops.size(); x += 1) {
+            assertTrue(stops.get(x - 1).index() <= stops.get(x).index());
+        }
+    }
+
+    @Test
+    public void withRings() {
+        MachineSpec spec = smallSpec();
+        String key = "* B II III CX AF";
+        String cipher = spec.newMachine(key + " " + PLUGS).convert(PLAIN);
+        Bombe bombe = new Bombe(spec, PLAIN.substring(0, 26),
+                                cipher.substring(0, 26), 0, "AF");
+        boolean found = false;
+        for (Bombe.Stop stop : bombe.run()) {
+            found |= stop.setting().startsWith(key + " (")
+                && plugsAgree(stop.setting(), PLUGS);
+        }
+        assertTrue(found);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void selfEncryptionRejected() {
+        new Bombe(smallSpec(), "ABC", "XBY", 0, "");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void lengthsMustMatch() {
+        new Bombe(smallSpec(), "ABC", "XY", 0, "");
+    }
+
+    @Test
+    public void cancelStopsEarly() throws InterruptedException {
+        Bombe bombe = new Bombe(MachineSpecTest.navalSpec(),
+                                "WETTERVORHERSAGE", "QBLXWLDAHKYEOEFP",
+                                0, "");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ForkJoinTask<?> task = bombe.start(pool);
+            while (bombe.searched() == 0) {
+                Thread.sleep(1);
+            }
+            bombe.cancel();
+            task.join();
+            long searched = bombe.searched();
+            assertTrue(bombe.cancelled());
+            assertTrue(searched < bombe.total());
+            Thread.sleep(20);
+            assertEquals(searched, bombe.searched());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
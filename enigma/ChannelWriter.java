@@ -0,0 +1,81 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A Writer that encodes characters with the default charset into a
+ *  direct buffer and writes the buffer to a FileChannel when it fills.
+ *  @author Andrew Tom
+ */
+class ChannelWriter extends Writer {
+
+    /** Size of the direct buffer. */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /** A writer replacing the contents of the file named NAME. */
+    ChannelWriter(String name) {
+        try {
+            _channel = FileChannel.open(Path.of(name),
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not open %s", name);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            CoderResult result = _encoder.encode(chars, _bytes, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_channel.isOpen()) {
+            drain();
+            _channel.close();
+        }
+    }
+
+    /** Write the encoded bytes to the channel. */
+    private void drain() throws IOException {
+        _bytes.flip();
+        while (_bytes.hasRemaining()) {
+            _channel.write(_bytes);
+        }
+        _bytes.clear();
+    }
+
+    /** Destination file. */
+    private final FileChannel _channel;
+
+    /** Encoder for the default charset. */
+    private final CharsetEncoder _encoder =
+        Charset.defaultCharset().newEncoder();
+
+    /** Encoded bytes not yet written. */
+    private final ByteBuffer _bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+}
@@ -0,0 +1,250 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/** Reads and writes precompiled configuration images.  An image holds
+ *  what a text configuration file describes, already checked and in
+ *  table form: the alphabet, the slot and pawl counts, and for each
+ *  rotor its name, kind, wiring table and notch bitmask.  Loading one
+ *  is a single memory-mapped read with no cycle parsing.
+ *
+ *  An image records the length, modification time and CRC-32 of the
+ *  text file it was compiled from, and ends with a CRC-32 of its own
+ *  contents.  An image whose source has changed, or that is damaged or
+ *  of another version, is ignored, and the caller falls back to the
+ *  text file.
+ *
+ *  All numbers are big-endian.  The layout is
+ *  <pre>
+ *     int MAGIC, int VERSION,
+ *     long source length, long source mtime, int source CRC,
+ *     int alphabet size N, char[N] alphabet,
+ *     int slots, int pawls, int rotor count,
+ *     per rotor: int name length, char[] name, byte kind,
+ *                int[N] wiring, long[(N + 63) / 64] notch mask,
+ *     int CRC of everything before it.
+ *  </pre>
+ *  @author Andrew Tom
+ */
+final class ConfigImage {
+
+    /** First word of every image ("ENIG"). */
+    static final int MAGIC = 0x454e4947;
+
+    /** Version of the layout written by this class. */
+    static final int VERSION = 1;
+
+    /** Suffix added to a configuration file's name to name its image. */
+    static final String SUFFIX = ".img";
+
+    /** Rotor kinds, as stored (and fingerprinted by StateTables). */
+    static final byte MOVING = 0, FIXED = 1, REFLECTOR = 2;
+
+    /** Not instantiable. */
+    private ConfigImage() {
+    }
+
+    /** Return the name of the default image for the configuration file
+     *  named CONFIG. */
+    static String imageName(String config) {
+        return config + SUFFIX;
+    }
+
+    /** Parse the configuration file named CONFIG and write its image to
+     *  the file named IMAGE, replacing it atomically.  Return the
+     *  compiled spec. */
+    static MachineSpec compile(String config, String image) {
+        Path source = Path.of(config);
+        byte[] text;
+        long mtime;
+        try {
+            mtime = Files.getLastModifiedTime(source).toMillis();
+            text = Files.readAllBytes(source);
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not open %s", config);
+        }
+        ConfigParser parser =
+            new ConfigParser(new StringReader(new String(text)));
+        parser.parse();
+        MachineSpec spec = new MachineSpec(parser.alphabet(),
+                                           parser.numRotors(),
+                                           parser.numPawls(),
+                                           parser.rotors());
+        Path target = Path.of(image).toAbsolutePath();
+        try {
+            Path tmp = Files.createTempFile(target.getParent(),
+                                            ".enigma", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    write(spec, text.length, mtime, crc(text), out);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not write %s", image);
+        }
+        return spec;
+    }
+
+    /** Write the image of SPEC to OUT, recording a source of LENGTH bytes
+     *  last modified at MTIME with checksum SOURCECRC. */
+    static void write(MachineSpec spec, long length, long mtime,
+                      int sourceCrc, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(
+            new CheckedOutputStream(new BufferedOutputStream(out), crc));
+        Alphabet alpha = spec.alphabet();
+        int n = alpha.size();
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(length);
+        data.writeLong(mtime);
+        data.writeInt(sourceCrc);
+        data.writeInt(n);
+        data.writeChars(alpha.salphabet());
+        data.writeInt(spec.numRotors());
+        data.writeInt(spec.numPawls());
+        data.writeInt(spec.rotors().size());
+        for (RotorSpec r : spec.rotors().values()) {
+            data.writeInt(r.name().length());
+            data.writeChars(r.name());
+            data.writeByte(r.reflecting() ? REFLECTOR
+                           : r.rotates() ? MOVING : FIXED);
+            int[] wiring = r.permutation().forwardTable();
+            for (int x = 0; x < n; x += 1) {
+                data.writeInt(wiring[x]);
+            }
+            long[] mask = new long[(n + Long.SIZE - 1) / Long.SIZE];
+            for (int x = 0; x < n; x += 1) {
+                if (r.atNotch(x)) {
+                    mask[x / Long.SIZE] |= 1L << (x % Long.SIZE);
+                }
+            }
+            for (long word : mask) {
+                data.writeLong(word);
+            }
+        }
+        data.flush();
+        data = new DataOutputStream(out);
+        data.writeInt((int) crc.getValue());
+        data.flush();
+    }
+
+    /** Return the spec stored in the image named IMAGE for the
+     *  configuration file named CONFIG, or null if there is no such
+     *  image or it is stale, damaged or of another version. */
+    static MachineSpec load(String config, String image) {
+        Path source = Path.of(config);
+        Path target = Path.of(image);
+        if (!Files.isRegularFile(target)) {
+            return null;
+        }
+        try (FileChannel channel =
+                 FileChannel.open(target, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + Integer.BYTES
+                || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate().position(0)
+                       .limit((int) size - Integer.BYTES));
+            if ((int) crc.getValue() != buf.getInt((int) size
+                                                   - Integer.BYTES)) {
+                return null;
+            }
+            long length = buf.getLong();
+            long mtime = buf.getLong();
+            int sourceCrc = buf.getInt();
+            if (Files.size(source) != length
+                || (Files.getLastModifiedTime(source).toMillis() != mtime
+                    && crc(Files.readAllBytes(source)) != sourceCrc)) {
+                return null;
+            }
+            return read(buf);
+        } catch (IOException | RuntimeException excp) {
+            return null;
+        }
+    }
+
+    /** Return the spec whose body starts at the position of BUF. */
+    private static MachineSpec read(ByteBuffer buf) {
+        int n = buf.getInt();
+        Alphabet alpha = new Alphabet(readChars(buf, n));
+        int numRotors = buf.getInt();
+        int numPawls = buf.getInt();
+        int count = buf.getInt();
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>(count);
+        for (int r = 0; r < count; r += 1) {
+            String name = readChars(buf, buf.getInt());
+            byte kind = buf.get();
+            int[] wiring = new int[n];
+            buf.asIntBuffer().get(wiring);
+            buf.position(buf.position() + n * Integer.BYTES);
+            Permutation perm = new Permutation(alpha, wiring);
+            StringBuilder notches = new StringBuilder();
+            for (int w = 0; w < (n + Long.SIZE - 1) / Long.SIZE; w += 1) {
+                long word = buf.getLong();
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    notches.append(alpha.toChar(w * Long.SIZE + bit));
+                    word &= word - 1;
+                }
+            }
+            switch (kind) {
+            case MOVING:
+                rotors.add(new MovingRotor(name, perm, notches.toString()));
+                break;
+            case FIXED:
+                rotors.add(new FixedRotor(name, perm));
+                break;
+            case REFLECTOR:
+                rotors.add(new Reflector(name, perm));
+                break;
+            default:
+                throw EnigmaException.error("bad rotor kind %d", kind);
+            }
+        }
+        return new MachineSpec(alpha, numRotors, numPawls, rotors);
+    }
+
+    /** Return the next LEN chars of BUF as a String. */
+    private static String readChars(ByteBuffer buf, int len) {
+        char[] chars = new char[len];
+        buf.asCharBuffer().get(chars);
+        buf.position(buf.position() + len * Character.BYTES);
+        return new String(chars);
+    }
+
+    /** Return the CRC-32 of BYTES. */
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /** Bytes before the alphabet size. */
+    private static final int HEADER_SIZE =
+        2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+}
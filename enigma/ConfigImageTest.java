@@ -0,0 +1,89 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/** The suite of all JUnit tests for the ConfigImage class.
+ *  @author Andrew Tom
+ */
+public class ConfigImageTest {
+
+    /** A small configuration with every kind of rotor. */
+    static final String CONFIG =
+        "ABCDEFGH 4 2\n"
+        + " I MAE (ABC) (DEFGH)\n"
+        + " II MH (AH) (BG) (CF)\n"
+        + " F N (ADG)\n"
+        + " R R (AE) (BF) (CG) (DH)\n";
+
+    /** Return a temporary configuration file holding CONFIG, whose image
+     *  is removed on exit. */
+    private File configFile() throws IOException {
+        File f = File.createTempFile("enigma", ".conf");
+        f.deleteOnExit();
+        new File(ConfigImage.imageName(f.getPath())).deleteOnExit();
+        Files.write(f.toPath(), CONFIG.getBytes());
+        return f;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        File conf = configFile();
+        String image = ConfigImage.imageName(conf.getPath());
+        MachineSpec compiled = ConfigImage.compile(conf.getPath(), image);
+        MachineSpec loaded = ConfigImage.load(conf.getPath(), image);
+        assertNotNull(loaded);
+        assertEquals("ABCDEFGH", loaded.alphabet().salphabet());
+        assertEquals(4, loaded.numRotors());
+        assertEquals(2, loaded.numPawls());
+        assertEquals(compiled.rotors().keySet(), loaded.rotors().keySet());
+        assertEquals("AE", loaded.rotor("I").notches());
+        assertTrue(loaded.rotor("R").reflecting());
+        assertFalse(loaded.rotor("F").rotates());
+        String setting = "* R F II I BHA (AB)";
+        String msg = "ABCDEFGHHGFEDCBAAAAAAAAABBBBBBBBB";
+        assertEquals(compiled.newMachine(setting).convert(msg),
+                     loaded.newMachine(setting).convert(msg));
+    }
+
+    @Test
+    public void staleImageIgnored() throws IOException {
+        File conf = configFile();
+        String image = ConfigImage.imageName(conf.getPath());
+        ConfigImage.compile(conf.getPath(), image);
+        Files.write(conf.toPath(), CONFIG.replace("(ADG)", "(AGD)")
+                    .getBytes());
+        conf.setLastModified(conf.lastModified() + 2000);
+        assertNull(ConfigImage.load(conf.getPath(), image));
+    }
+
+    @Test
+    public void touchedSourceStillFresh() throws IOException {
+        File conf = configFile();
+        String image = ConfigImage.imageName(conf.getPath());
+        ConfigImage.compile(conf.getPath(), image);
+        conf.setLastModified(conf.lastModified() + 2000);
+        assertNotNull(ConfigImage.load(conf.getPath(), image));
+    }
+
+    @Test
+    public void damagedImageIgnored() throws IOException {
+        File conf = configFile();
+        String image = ConfigImage.imageName(conf.getPath());
+        ConfigImage.compile(conf.getPath(), image);
+        try (RandomAccessFile f = new RandomAccessFile(image, "rw")) {
+            f.seek(40);
+            int b = f.read();
+            f.seek(40);
+            f.write(b ^ 1);
+        }
+        assertNull(ConfigImage.load(conf.getPath(), image));
+        assertNull(ConfigImage.load(conf.getPath(), image + ".missing"));
+    }
+
+}
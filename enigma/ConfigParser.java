@@ -0,0 +1,288 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/** A single-pass reader for configuration files.  The file is
+ *  "ALPHABET NUMROTORS NUMPAWLS" followed by rotor descriptions
+ *  "NAME TYPE CYCLES...", all separated by arbitrary whitespace.  A
+ *  single word between a ')' and the next '(' is ignored.  Errors are
+ *  reported with the line and column at which they were found.
+ *  @author Andrew Tom
+ */
+class ConfigParser {
+
+    /** A parser reading its configuration from SOURCE. */
+    ConfigParser(Reader source) {
+        _source = source;
+    }
+
+    /** Read the whole configuration.  Afterwards, alphabet(),
+     *  numRotors(), numPawls() and rotors() describe it. */
+    void parse() {
+        String alphabetStr = word("configuration file truncated");
+        int line = _tokenLine, col = _tokenColumn;
+        try {
+            _alphabet = new Alphabet(alphabetStr);
+        } catch (EnigmaException excp) {
+            throw error(line, col, excp.getMessage());
+        }
+        _numRotors = number();
+        _numPawls = number();
+        while (skipSpace() >= 0) {
+            readRotor();
+        }
+    }
+
+    /** Return the alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the rotors described, in order. */
+    ArrayList<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Read one rotor description, starting at a non-blank character. */
+    private void readRotor() {
+        if (_pendingName == null && peek() == '(') {
+            throw error(_line, _column, "expected rotor name");
+        }
+        String name = word(null);
+        int line = _tokenLine, col = _tokenColumn;
+        readCycles(name, line, col);
+    }
+
+    /** Read the type and cycles of the rotor named NAME, which starts
+     *  at LINE and COL, and add it to _rotors.  Stops at the name of the
+     *  next rotor, which is left in _pendingName, or at end of file. */
+    private void readCycles(String name, int line, int col) {
+        String type = word("bad rotor description");
+        char kind = type.charAt(0);
+        if (kind != 'M' && kind != 'N' && kind != 'R') {
+            throw error(_tokenLine, _tokenColumn, "Wrong rotor type");
+        }
+        String notches = type.substring(1);
+        for (int x = 0; x < notches.length(); x += 1) {
+            if (!_alphabet.contains(notches.charAt(x))) {
+                throw error(_tokenLine, _tokenColumn + 1 + x,
+                            "notch not in alphabet");
+            }
+        }
+
+        _cycles.setLength(0);
+        _pendingName = null;
+        boolean afterClose = false;
+        while (skipSpace() >= 0) {
+            int c = peek();
+            if (c == '(') {
+                readCycle();
+                afterClose = true;
+                continue;
+            }
+            int wordLine = _line, wordCol = _column;
+            StringBuilder word = new StringBuilder();
+            while (isWordChar(peek())) {
+                word.append((char) next());
+            }
+            boolean spaced = isSpace(peek());
+            if (afterClose && word.length() > 0
+                && (skipSpace() == '(')) {
+                continue;
+            }
+            if (!spaced) {
+                while (peek() >= 0 && !isSpace(peek())) {
+                    word.append((char) next());
+                }
+            }
+            _pendingName = word.toString();
+            _pendingLine = wordLine;
+            _pendingColumn = wordCol;
+            break;
+        }
+
+        Permutation perm;
+        try {
+            perm = new Permutation(_cycles.toString(), _alphabet);
+        } catch (EnigmaException excp) {
+            throw error(line, col, "rotor " + name + ": " + excp.getMessage());
+        }
+        if (kind == 'M') {
+            _rotors.add(new MovingRotor(name, perm, notches));
+        } else if (kind == 'N') {
+            _rotors.add(new FixedRotor(name, perm));
+        } else {
+            _rotors.add(new Reflector(name, perm));
+        }
+    }
+
+    /** Read one parenthesized cycle into _cycles. */
+    private void readCycle() {
+        int line = _line, col = _column;
+        next();
+        _cycles.append('(');
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw error(line, col, "unterminated cycle");
+            }
+            _cycles.append((char) c);
+            if (c == ')') {
+                break;
+            }
+        }
+        _cycles.append(' ');
+    }
+
+    /** Return the next whitespace-delimited word, or the pending rotor
+     *  name if there is one.  At end of file, throw an error with
+     *  message EOFMSG, or "expected rotor name" if that is null. */
+    private String word(String eofMsg) {
+        if (_pendingName != null) {
+            String result = _pendingName;
+            _tokenLine = _pendingLine;
+            _tokenColumn = _pendingColumn;
+            _pendingName = null;
+            return result;
+        }
+        if (skipSpace() < 0) {
+            throw error(_line, _column,
+                        eofMsg == null ? "expected rotor name" : eofMsg);
+        }
+        _tokenLine = _line;
+        _tokenColumn = _column;
+        StringBuilder result = new StringBuilder();
+        while (peek() >= 0 && !isSpace(peek())) {
+            result.append((char) next());
+        }
+        return result.toString();
+    }
+
+    /** Return the next word as a non-negative int. */
+    private int number() {
+        String digits = word("configuration file truncated");
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException excp) {
+            throw error(_tokenLine, _tokenColumn, "numbers wrong");
+        }
+    }
+
+    /** Skip whitespace, returning the next character (not consumed), or
+     *  -1 at end of file.  A rotor name already read counts as input. */
+    private int skipSpace() {
+        if (_pendingName != null) {
+            return _pendingName.charAt(0);
+        }
+        while (isSpace(peek())) {
+            next();
+        }
+        return peek();
+    }
+
+    /** Return the next character without consuming it, or -1. */
+    private int peek() {
+        if (_pos == _limit) {
+            try {
+                _limit = _source.read(_buffer, 0, _buffer.length);
+            } catch (IOException excp) {
+                throw EnigmaException.error("could not read configuration");
+            }
+            _pos = 0;
+            if (_limit <= 0) {
+                _limit = 0;
+                return -1;
+            }
+        }
+        return _buffer[_pos];
+    }
+
+    /** Consume and return the next character, or -1. */
+    private int next() {
+        int c = peek();
+        if (c >= 0) {
+            _pos += 1;
+            if (c == '\n') {
+                _line += 1;
+                _column = 1;
+            } else {
+                _column += 1;
+            }
+        }
+        return c;
+    }
+
+    /** Return true iff C is whitespace. */
+    private static boolean isSpace(int c) {
+        return c >= 0 && Character.isWhitespace((char) c);
+    }
+
+    /** Return true iff C is a word character ([A-Za-z0-9_]). */
+    private static boolean isWordChar(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+            || c >= '0' && c <= '9' || c == '_';
+    }
+
+    /** Return an error for LINE and COL with message MSG. */
+    private static EnigmaException error(int line, int col, String msg) {
+        return EnigmaException.error("line %d, column %d: %s",
+                                     line, col, msg);
+    }
+
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Configuration text. */
+    private final Reader _source;
+
+    /** Read buffer. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+
+    /** Next character in _buffer. */
+    private int _pos;
+
+    /** Number of valid characters in _buffer. */
+    private int _limit;
+
+    /** Line of the next character. */
+    private int _line = 1;
+
+    /** Column of the next character. */
+    private int _column = 1;
+
+    /** Position of the last word read. */
+    private int _tokenLine, _tokenColumn;
+
+    /** A rotor name already read while looking for cycles, or null. */
+    private String _pendingName;
+
+    /** Position of _pendingName. */
+    private int _pendingLine, _pendingColumn;
+
+    /** Cycles of the rotor being read. */
+    private final StringBuilder _cycles = new StringBuilder();
+
+    /** The alphabet. */
+    private Alphabet _alphabet;
+
+    /** Number of slots. */
+    private int _numRotors;
+
+    /** Number of pawls. */
+    private int _numPawls;
+
+    /** Rotors read so far. */
+    private final ArrayList<Rotor> _rotors = new ArrayList<Rotor>();
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author Andrew Tom
+ */
+public class ConfigParserTest {
+
+    /** Return a parser that has read CONFIG. */
+    private ConfigParser parse(String config) {
+        ConfigParser p = new ConfigParser(new StringReader(config));
+        p.parse();
+        return p;
+    }
+
+    @Test
+    public void basicConfig() {
+        ConfigParser p = parse("ABCD 3 1\n I MB (AB) (CD)\n"
+                               + " F N\n R R (AC)\n       (BD)\n");
+        assertEquals("ABCD", p.alphabet().salphabet());
+        assertEquals(3, p.numRotors());
+        assertEquals(1, p.numPawls());
+        assertEquals(3, p.rotors().size());
+        Rotor i = p.rotors().get(0);
+        assertEquals("I", i.name());
+        assertTrue(i.rotates());
+        assertEquals("B", ((MovingRotor) i).notches());
+        assertEquals('B', i.permutation().permute('A'));
+        assertEquals('C', p.rotors().get(1).permutation().permute('C'));
+        assertTrue(p.rotors().get(2).reflecting());
+        assertEquals('D', p.rotors().get(2).permutation().permute('B'));
+    }
+
+    @Test
+    public void junkBetweenCycles() {
+        ConfigParser p = parse("ABCDEF 2 1 I MA (AB)junk (CD)x(EF)\n"
+                               + "R R (AF) (BE) (CD)");
+        assertEquals(2, p.rotors().size());
+        Permutation perm = p.rotors().get(0).permutation();
+        assertEquals('B', perm.permute('A'));
+        assertEquals('D', perm.permute('C'));
+        assertEquals('F', perm.permute('E'));
+        assertEquals("R", p.rotors().get(1).name());
+    }
+
+    @Test
+    public void errorPosition() {
+        try {
+            parse("ABCD 3 1\n I MB (AB)\n  II QA (CD)\n");
+            fail("bad type accepted");
+        } catch (EnigmaException excp) {
+            assertEquals("line 3, column 6: Wrong rotor type",
+                         excp.getMessage());
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void truncated() {
+        parse("ABCD 3");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void unterminatedCycle() {
+        parse("ABCD 3 1 I MA (AB");
+    }
+
+}
@@ -0,0 +1,98 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Converts many independent messages concurrently over one shared
+ *  MachineSpec.  Each job parses its own setting line into a fresh
+ *  MachineState, so jobs share only the immutable compiled rotor
+ *  library.
+ *  @author Andrew Tom
+ */
+class EnigmaBatch implements AutoCloseable {
+
+    /** A batch converter for SPEC running jobs on a pool with one thread
+     *  per available processor. */
+    EnigmaBatch(MachineSpec spec) {
+        this(spec, Executors.newFixedThreadPool(
+                 Runtime.getRuntime().availableProcessors(), r -> {
+                     Thread t = new Thread(r, "enigma-batch");
+                     t.setDaemon(true);
+                     return t;
+                 }), true);
+    }
+
+    /** A batch converter for SPEC running jobs on EXECUTOR, which stays
+     *  owned by the caller (it may, for example, be a virtual-thread
+     *  executor). */
+    EnigmaBatch(MachineSpec spec, Executor executor) {
+        this(spec, executor, false);
+    }
+
+    /** A batch converter for SPEC running jobs on EXECUTOR, which close()
+     *  shuts down iff OWNED. */
+    private EnigmaBatch(MachineSpec spec, Executor executor, boolean owned) {
+        _spec = spec;
+        _executor = executor;
+        _owned = owned;
+    }
+
+    /** Return a future for the conversion of MESSAGE by a machine set
+     *  up from the setting line SETTINGS.  An EnigmaException from
+     *  either completes the future exceptionally. */
+    CompletableFuture<String> submit(String settings, String message) {
+        return CompletableFuture.supplyAsync(
+            () -> _spec.newState(settings).convert(message), _executor);
+    }
+
+    /** Submit each MESSAGES[i] with setting line SETTINGS[i], and return a
+     *  future for all the results in submission order. */
+    CompletableFuture<List<String>> submitAll(List<String> settings,
+                                              List<String> messages) {
+        if (settings.size() != messages.size()) {
+            throw EnigmaException.error("Settings and messages differ "
+                                        + "in number");
+        }
+        ArrayList<CompletableFuture<String>> jobs =
+            new ArrayList<CompletableFuture<String>>();
+        for (int x = 0; x < messages.size(); x += 1) {
+            jobs.add(submit(settings.get(x), messages.get(x)));
+        }
+        CompletableFuture<?>[] all = jobs.toArray(new CompletableFuture<?>[0]);
+        return CompletableFuture.allOf(all)
+            .thenApply(ignored -> {
+                ArrayList<String> results = new ArrayList<String>();
+                for (CompletableFuture<String> job : jobs) {
+                    results.add(job.join());
+                }
+                return results;
+            });
+    }
+
+    /** Return the spec my jobs run on. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Stop accepting work, shutting down my pool if I created it.
+     *  Jobs already submitted still complete. */
+    @Override
+    public void close() {
+        if (_owned) {
+            ((ExecutorService) _executor).shutdown();
+        }
+    }
+
+    /** Shared compiled configuration. */
+    private final MachineSpec _spec;
+
+    /** Runs the jobs. */
+    private final Executor _executor;
+
+    /** True iff _executor was created by me. */
+    private final boolean _owned;
+}
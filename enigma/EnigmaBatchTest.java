@@ -0,0 +1,61 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static enigma.MachineSpecTest.SETTINGS;
+import static enigma.MachineSpecTest.navalSpec;
+
+/** The suite of all JUnit tests for the EnigmaBatch class.
+ *  @author Andrew Tom
+ */
+public class EnigmaBatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void submitConverts() {
+        try (EnigmaBatch batch = new EnigmaBatch(navalSpec())) {
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                         batch.submit(SETTINGS[0], "FROMHISSHOULDERHIAWATHA")
+                         .join());
+        }
+    }
+
+    @Test
+    public void submitAllInOrder() {
+        MachineSpec spec = navalSpec();
+        List<String> settings = new ArrayList<String>();
+        List<String> messages = new ArrayList<String>();
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 200; i += 1) {
+            String setting = SETTINGS[i % SETTINGS.length];
+            String msg = MachineTest.longMessage().substring(i, 2 * i + 1);
+            settings.add(setting);
+            messages.add(msg);
+            expected.add(spec.newState(setting).convert(msg));
+        }
+        try (EnigmaBatch batch = new EnigmaBatch(spec)) {
+            assertEquals(expected, batch.submitAll(settings, messages).join());
+        }
+    }
+
+    @Test
+    public void badSettingFails() {
+        try (EnigmaBatch batch = new EnigmaBatch(navalSpec(), Runnable::run)) {
+            batch.submit("B Beta III IV I AXLE", "HELLO").join();
+            fail("missing * accepted");
+        } catch (CompletionException excp) {
+            assertTrue(excp.getCause() instanceof EnigmaException);
+        }
+    }
+
+}
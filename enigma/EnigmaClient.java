@@ -0,0 +1,188 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A client of EnigmaServer.  Requests may be pipelined: the *Async
+ *  methods send a request and return at once with a future for its
+ *  reply, which a reader thread completes when the reply arrives.  The
+ *  other methods wait for their reply.  A client may be used from
+ *  several threads.
+ *  @author Andrew Tom
+ */
+final class EnigmaClient implements Closeable {
+
+    /** A client connected to the server at ADDRESS. */
+    EnigmaClient(SocketAddress address) {
+        try {
+            _channel = SocketChannel.open(address);
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not connect to %s: %s",
+                                        address, excp.getMessage());
+        }
+        _reader = new Thread(this::readReplies, "enigma-client");
+        _reader.setDaemon(true);
+        _reader.start();
+    }
+
+    /** Return an unused session id. */
+    int newSession() {
+        return _nextSession.getAndIncrement();
+    }
+
+    /** Open SESSION, an id from newSession(), with the machine of config
+     *  CONFIG set up by the setting line SETTING, and return the future
+     *  reply.  Requests for SESSION may be sent at once. */
+    CompletableFuture<String> openAsync(int session, String config,
+                                        String setting) {
+        return send(Protocol.OPEN, session, config + "\n" + setting);
+    }
+
+    /** Open a session with the machine of config CONFIG set up by the
+     *  setting line SETTING, and return its id. */
+    int open(String config, String setting) {
+        int session = newSession();
+        await(openAsync(session, config, setting));
+        return session;
+    }
+
+    /** Send TEXT to be converted by SESSION and return the future
+     *  result. */
+    CompletableFuture<String> convertAsync(int session, String text) {
+        return send(Protocol.CONVERT, session, text);
+    }
+
+    /** Return TEXT as converted by SESSION. */
+    String convert(int session, String text) {
+        return await(convertAsync(session, text));
+    }
+
+    /** Close SESSION. */
+    void close(int session) {
+        await(send(Protocol.CLOSE, session, ""));
+    }
+
+    /** Close the connection, failing any replies still awaited. */
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* Already closed. */
+        }
+        failAll("connection closed");
+    }
+
+    /** Send a request of type TYPE for SESSION carrying PAYLOAD, and
+     *  return the future reply payload. */
+    private CompletableFuture<String> send(byte type, int session,
+                                           String payload) {
+        int request = _nextRequest.getAndIncrement();
+        CompletableFuture<String> reply = new CompletableFuture<String>();
+        _pending.put(request, reply);
+        ByteBuffer frame = Protocol.request(type, request, session, payload);
+        try {
+            synchronized (_channel) {
+                while (frame.hasRemaining()) {
+                    _channel.write(frame);
+                }
+            }
+        } catch (IOException excp) {
+            _pending.remove(request);
+            reply.completeExceptionally(
+                EnigmaException.error("could not send: %s",
+                                      excp.getMessage()));
+        }
+        return reply;
+    }
+
+    /** Return the value of REPLY, rethrowing its failure as an
+     *  EnigmaException. */
+    private static String await(CompletableFuture<String> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw EnigmaException.error("%s", excp.getCause());
+        }
+    }
+
+    /** Read replies and complete their futures until the connection
+     *  closes. */
+    private void readReplies() {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES
+                                                + Protocol.REPLY_HEADER);
+        try {
+            while (true) {
+                header.clear();
+                readFully(header);
+                header.flip();
+                int len = header.getInt();
+                byte status = header.get();
+                int request = header.getInt();
+                if (len < Protocol.REPLY_HEADER || len > Protocol.MAX_FRAME) {
+                    throw new IOException("bad frame");
+                }
+                ByteBuffer body =
+                    ByteBuffer.allocate(len - Protocol.REPLY_HEADER);
+                readFully(body);
+                body.flip();
+                String payload = Protocol.text(body, body.remaining());
+                CompletableFuture<String> reply = _pending.remove(request);
+                if (reply == null) {
+                    continue;
+                }
+                if (status == Protocol.OK) {
+                    reply.complete(payload);
+                } else {
+                    reply.completeExceptionally(
+                        EnigmaException.error("%s", payload));
+                }
+            }
+        } catch (IOException excp) {
+            failAll("connection lost");
+        }
+    }
+
+    /** Fill BUF from the connection. */
+    private void readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (_channel.read(buf) < 0) {
+                throw new IOException("end of stream");
+            }
+        }
+    }
+
+    /** Fail every awaited reply with MESSAGE. */
+    private void failAll(String message) {
+        for (Integer request : _pending.keySet()) {
+            CompletableFuture<String> reply = _pending.remove(request);
+            if (reply != null) {
+                reply.completeExceptionally(
+                    EnigmaException.error("%s", message));
+            }
+        }
+    }
+
+    /** Connection to the server, in blocking mode. */
+    private final SocketChannel _channel;
+    /** Thread running readReplies(). */
+    private final Thread _reader;
+    /** Replies awaited, by request id. */
+    private final ConcurrentHashMap<Integer, CompletableFuture<String>>
+        _pending = new ConcurrentHashMap<Integer,
+                                         CompletableFuture<String>>();
+    /** Next request id. */
+    private final AtomicInteger _nextRequest = new AtomicInteger();
+    /** Next session id. */
+    private final AtomicInteger _nextSession = new AtomicInteger();
+}
@@ -0,0 +1,104 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** An InputStream that converts the bytes of another stream through a
+ *  Machine as they are read.  Each byte is taken as one ISO-8859-1
+ *  character, so the machine's alphabet must lie in that range.
+ *  @author Andrew Tom
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** A stream converting the bytes of IN with MACHINE.  Bytes outside
+     *  the machine's alphabet are an error. */
+    EnigmaInputStream(InputStream in, Machine machine) {
+        this(in, machine, false);
+    }
+
+    /** A stream converting the bytes of IN with MACHINE.  When
+     *  COPYOTHERS, bytes outside the machine's alphabet pass through
+     *  unchanged. */
+    EnigmaInputStream(InputStream in, Machine machine, boolean copyOthers) {
+        super(in);
+        checkSingleByte(machine.alphabet());
+        _machine = machine;
+        _copyOthers = copyOthers;
+    }
+
+    /** Throw an error unless every character of ALPHA fits in a byte. */
+    static void checkSingleByte(Alphabet alpha) {
+        for (int x = 0; x < alpha.size(); x += 1) {
+            if (alpha.toChar(x) > MAX_BYTE_CHAR) {
+                throw EnigmaException.error("Alphabet is not single-byte");
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return b;
+        }
+        _chars[0] = (char) b;
+        _machine.convertRun(_chars, 0, 1, _chars, 0, _copyOthers);
+        return _chars[0];
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, Math.min(len, _chars.length));
+        for (int x = 0; x < n; x += 1) {
+            _chars[x] = (char) (b[off + x] & MAX_BYTE_CHAR);
+        }
+        if (n > 0) {
+            _machine.convertRun(_chars, 0, n, _chars, 0, _copyOthers);
+        }
+        for (int x = 0; x < n; x += 1) {
+            b[off + x] = (byte) _chars[x];
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buf = new byte[(int) Math.max(0, Math.min(n, _chars.length))];
+        long skipped = 0;
+        while (skipped < n) {
+            int k = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (k < 0) {
+                break;
+            }
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /** Largest character representable in one byte. */
+    static final int MAX_BYTE_CHAR = 0xFF;
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+
+    /** True iff bytes outside the alphabet pass through. */
+    private final boolean _copyOthers;
+
+    /** Conversion buffer. */
+    private final char[] _chars = new char[EnigmaWriter.BUFFER_SIZE];
+}
@@ -0,0 +1,168 @@
+package enigma;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A MetricsListener that keeps striped counters, so that threads
+ *  converting at the same time do not contend on them, and exposes them
+ *  through EnigmaMetricsMBean.  Per-slot counters are allocated as
+ *  higher slots are first seen.
+ *  @author Andrew Tom
+ */
+class EnigmaMetrics implements MetricsListener, EnigmaMetricsMBean {
+
+    @Override
+    public void charactersConverted(long count) {
+        _characters.add(count);
+    }
+
+    @Override
+    public void messageProcessed() {
+        _messages.increment();
+    }
+
+    @Override
+    public void settingApplied() {
+        _settings.increment();
+    }
+
+    @Override
+    public void rotorAdvanced(int slot, boolean turnover) {
+        LongAdder[][] slots = _slots;
+        if (slot >= slots.length) {
+            slots = grow(slot);
+        }
+        slots[slot][0].increment();
+        if (turnover) {
+            slots[slot][1].increment();
+        }
+    }
+
+    @Override
+    public void configLoaded(long nanos) {
+        _configLoads.increment();
+        _configNanos.add(nanos);
+        _lastConfigNanos = nanos;
+    }
+
+    @Override
+    public void charsIn(long count) {
+        _charsIn.add(count);
+    }
+
+    @Override
+    public void charsOut(long count) {
+        _charsOut.add(count);
+    }
+
+    @Override
+    public long getCharactersConverted() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessagesProcessed() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSettingsApplied() {
+        return _settings.sum();
+    }
+
+    @Override
+    public long[] getRotorAdvances() {
+        return slotSums(0);
+    }
+
+    @Override
+    public long[] getTurnovers() {
+        return slotSums(1);
+    }
+
+    @Override
+    public long getConfigLoads() {
+        return _configLoads.sum();
+    }
+
+    @Override
+    public long getLastConfigLoadNanos() {
+        return _lastConfigNanos;
+    }
+
+    @Override
+    public long getTotalConfigLoadNanos() {
+        return _configNanos.sum();
+    }
+
+    @Override
+    public long getCharsIn() {
+        return _charsIn.sum();
+    }
+
+    @Override
+    public long getCharsOut() {
+        return _charsOut.sum();
+    }
+
+    @Override
+    public void reset() {
+        _characters.reset();
+        _messages.reset();
+        _settings.reset();
+        _configLoads.reset();
+        _configNanos.reset();
+        _lastConfigNanos = 0;
+        _charsIn.reset();
+        _charsOut.reset();
+        for (LongAdder[] slot : _slots) {
+            slot[0].reset();
+            slot[1].reset();
+        }
+    }
+
+    /** Return the per-slot counters, with room for at least SLOT + 1
+     *  slots. */
+    private synchronized LongAdder[][] grow(int slot) {
+        LongAdder[][] old = _slots;
+        if (slot < old.length) {
+            return old;
+        }
+        LongAdder[][] slots = new LongAdder[slot + 1][];
+        System.arraycopy(old, 0, slots, 0, old.length);
+        for (int x = old.length; x < slots.length; x += 1) {
+            slots[x] = new LongAdder[] { new LongAdder(), new LongAdder() };
+        }
+        _slots = slots;
+        return slots;
+    }
+
+    /** Return the sums of counter WHICH (0 for advances, 1 for
+     *  turnovers) of each slot. */
+    private long[] slotSums(int which) {
+        LongAdder[][] slots = _slots;
+        long[] result = new long[slots.length];
+        for (int x = 0; x < slots.length; x += 1) {
+            result[x] = slots[x][which].sum();
+        }
+        return result;
+    }
+
+    /** Characters converted. */
+    private final LongAdder _characters = new LongAdder();
+    /** Message lines converted. */
+    private final LongAdder _messages = new LongAdder();
+    /** Setting lines applied. */
+    private final LongAdder _settings = new LongAdder();
+    /** Configurations read. */
+    private final LongAdder _configLoads = new LongAdder();
+    /** Total configuration read time. */
+    private final LongAdder _configNanos = new LongAdder();
+    /** Last configuration read time. */
+    private volatile long _lastConfigNanos;
+    /** Input characters. */
+    private final LongAdder _charsIn = new LongAdder();
+    /** Output characters. */
+    private final LongAdder _charsOut = new LongAdder();
+    /** For each slot, its advance and turnover counters. */
+    private volatile LongAdder[][] _slots = new LongAdder[0][];
+}
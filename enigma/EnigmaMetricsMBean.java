@@ -0,0 +1,44 @@
+package enigma;
+
+/** Management interface of EnigmaMetrics.  Counts are totals since
+ *  start-up or the last reset().
+ *  @author Andrew Tom
+ */
+public interface EnigmaMetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharactersConverted();
+
+    /** Return the number of message lines converted by Main. */
+    long getMessagesProcessed();
+
+    /** Return the number of setting lines applied by Main. */
+    long getSettingsApplied();
+
+    /** Return the number of steps made by the rotor in each slot. */
+    long[] getRotorAdvances();
+
+    /** Return the number of notch-carried steps made by the rotor in
+     *  each slot. */
+    long[] getTurnovers();
+
+    /** Return the number of configurations read. */
+    long getConfigLoads();
+
+    /** Return the time taken by the last configuration read, in
+     *  nanoseconds. */
+    long getLastConfigLoadNanos();
+
+    /** Return the total time spent reading configurations, in
+     *  nanoseconds. */
+    long getTotalConfigLoadNanos();
+
+    /** Return the number of input characters read by Main. */
+    long getCharsIn();
+
+    /** Return the number of output characters written by Main. */
+    long getCharsOut();
+
+    /** Set every count to 0. */
+    void reset();
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** An OutputStream that converts bytes through a Machine before passing
+ *  them on to another stream.  Each byte is taken as one ISO-8859-1
+ *  character, so the machine's alphabet must lie in that range.
+ *  @author Andrew Tom
+ */
+class EnigmaOutputStream extends FilterOutputStream {
+
+    /** A stream converting bytes with MACHINE and writing them to OUT.
+     *  Bytes outside the machine's alphabet are an error. */
+    EnigmaOutputStream(OutputStream out, Machine machine) {
+        this(out, machine, false);
+    }
+
+    /** A stream converting bytes with MACHINE and writing them to OUT.
+     *  When COPYOTHERS, bytes outside the machine's alphabet pass
+     *  through unchanged. */
+    EnigmaOutputStream(OutputStream out, Machine machine,
+                       boolean copyOthers) {
+        super(out);
+        EnigmaInputStream.checkSingleByte(machine.alphabet());
+        _machine = machine;
+        _copyOthers = copyOthers;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        _chars[0] = (char) (b & MAX_BYTE_CHAR);
+        _machine.convertRun(_chars, 0, 1, _chars, 0, _copyOthers);
+        out.write(_chars[0]);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _chars.length);
+            for (int x = 0; x < n; x += 1) {
+                _chars[x] = (char) (b[off + x] & MAX_BYTE_CHAR);
+            }
+            _machine.convertRun(_chars, 0, n, _chars, 0, _copyOthers);
+            for (int x = 0; x < n; x += 1) {
+                _bytes[x] = (byte) _chars[x];
+            }
+            out.write(_bytes, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Largest character representable in one byte. */
+    private static final int MAX_BYTE_CHAR = EnigmaInputStream.MAX_BYTE_CHAR;
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+
+    /** True iff bytes outside the alphabet pass through. */
+    private final boolean _copyOthers;
+
+    /** Conversion buffer. */
+    private final char[] _chars = new char[EnigmaWriter.BUFFER_SIZE];
+
+    /** Output buffer. */
+    private final byte[] _bytes = new byte[EnigmaWriter.BUFFER_SIZE];
+}
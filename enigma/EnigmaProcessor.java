@@ -0,0 +1,267 @@
+package enigma;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.concurrent.Flow;
+
+/** A Flow.Processor that converts a stream of buffer chunks through a
+ *  Machine.  Each chunk received from upstream is converted on the
+ *  thread that delivers it and passed downstream as one chunk, so the
+ *  processor needs no thread or queue of its own.  Demand flows the
+ *  other way: the processor requests from upstream exactly what its
+ *  subscriber has requested from it, so a slow subscriber slows the
+ *  publisher down instead of making chunks pile up.
+ *
+ *  Each processor has its own Machine built from a shared MachineSpec,
+ *  so any number of processors over one compiled rotor library may run
+ *  at once.  A chunk belongs to the processor once passed to onNext: a
+ *  writable heap buffer is converted in place and passed on, and any
+ *  other buffer is copied.  Chars() processors take CharBuffers; bytes()
+ *  processors take ByteBuffers, one ISO-8859-1 character per byte, as
+ *  EnigmaOutputStream does.  A processor has at most one subscriber.
+ *  @author Andrew Tom
+ */
+final class EnigmaProcessor<T extends Buffer>
+    implements Flow.Processor<T, T> {
+
+    /** Return a processor converting CharBuffers with a machine for SPEC
+     *  set up by the setting line SETTING.  When COPYOTHERS, characters
+     *  outside the alphabet pass through unchanged; otherwise they are
+     *  an error. */
+    static EnigmaProcessor<CharBuffer> chars(MachineSpec spec,
+                                             String setting,
+                                             boolean copyOthers) {
+        return new EnigmaProcessor<CharBuffer>(spec.newMachine(setting),
+                                               copyOthers, CHARS);
+    }
+
+    /** Return a processor converting ByteBuffers with a machine for SPEC
+     *  set up by the setting line SETTING, whose alphabet must be
+     *  single-byte.  COPYOTHERS is as for chars(). */
+    static EnigmaProcessor<ByteBuffer> bytes(MachineSpec spec,
+                                             String setting,
+                                             boolean copyOthers) {
+        EnigmaInputStream.checkSingleByte(spec.alphabet());
+        return new EnigmaProcessor<ByteBuffer>(spec.newMachine(setting),
+                                               copyOthers, BYTES);
+    }
+
+    /** A processor converting with MACHINE, passing characters outside
+     *  its alphabet iff COPYOTHERS, using CODEC to reach the
+     *  characters of a chunk. */
+    private EnigmaProcessor(Machine machine, boolean copyOthers,
+                            Codec<T> codec) {
+        _machine = machine;
+        _copyOthers = copyOthers;
+        _codec = codec;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Throwable failure;
+        boolean done;
+        synchronized (this) {
+            if (_downstream != null) {
+                subscriber.onSubscribe(CANCELLED);
+                subscriber.onError(new IllegalStateException(
+                    "EnigmaProcessor already has a subscriber"));
+                return;
+            }
+            _downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Downstream());
+        synchronized (this) {
+            _ready = true;
+            failure = _failure;
+            done = _done;
+        }
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else if (done) {
+            subscriber.onComplete();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long demand;
+        synchronized (this) {
+            if (_upstream != null || _cancelled) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+            demand = _pendingDemand;
+            _pendingDemand = 0;
+        }
+        if (demand > 0) {
+            subscription.request(demand);
+        }
+    }
+
+    @Override
+    public void onNext(T chunk) {
+        T result;
+        try {
+            result = _codec.convert(chunk, _machine, _copyOthers);
+        } catch (EnigmaException excp) {
+            cancelUpstream();
+            onError(excp);
+            return;
+        }
+        Flow.Subscriber<? super T> downstream = _downstream;
+        if (downstream != null && !_cancelled) {
+            downstream.onNext(result);
+        }
+    }
+
+    @Override
+    public void onError(Throwable failure) {
+        Flow.Subscriber<? super T> downstream;
+        synchronized (this) {
+            if (_done || _failure != null) {
+                return;
+            }
+            _failure = failure;
+            downstream = _ready ? _downstream : null;
+        }
+        if (downstream != null) {
+            downstream.onError(failure);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        Flow.Subscriber<? super T> downstream;
+        synchronized (this) {
+            if (_done || _failure != null) {
+                return;
+            }
+            _done = true;
+            downstream = _ready ? _downstream : null;
+        }
+        if (downstream != null) {
+            downstream.onComplete();
+        }
+    }
+
+    /** Cancel my upstream subscription, now or as soon as it arrives. */
+    private void cancelUpstream() {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            _cancelled = true;
+            upstream = _upstream;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    /** The subscription given to my subscriber. */
+    private class Downstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelUpstream();
+                onError(new IllegalArgumentException(
+                    "non-positive request: " + n));
+                return;
+            }
+            Flow.Subscription upstream;
+            synchronized (EnigmaProcessor.this) {
+                if (_cancelled) {
+                    return;
+                }
+                upstream = _upstream;
+                if (upstream == null) {
+                    _pendingDemand = _pendingDemand + n < 0
+                        ? Long.MAX_VALUE : _pendingDemand + n;
+                    return;
+                }
+            }
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelUpstream();
+        }
+    }
+
+    /** Access to the characters of one kind of buffer. */
+    private interface Codec<T extends Buffer> {
+        /** Return CHUNK converted by MACHINE, passing characters outside
+         *  its alphabet iff COPYOTHERS. */
+        T convert(T chunk, Machine machine, boolean copyOthers);
+    }
+
+    /** Converts CharBuffers. */
+    private static final Codec<CharBuffer> CHARS = (chunk, m, copy) -> {
+        int len = chunk.remaining();
+        if (chunk.hasArray()) {
+            char[] a = chunk.array();
+            int off = chunk.arrayOffset() + chunk.position();
+            m.convertRun(a, off, len, a, off, copy);
+            return chunk;
+        }
+        char[] a = new char[len];
+        chunk.get(a);
+        m.convertRun(a, 0, len, a, 0, copy);
+        return CharBuffer.wrap(a);
+    };
+
+    /** Converts ByteBuffers, one ISO-8859-1 character per byte. */
+    private static final Codec<ByteBuffer> BYTES = (chunk, m, copy) -> {
+        int len = chunk.remaining();
+        char[] chars = new char[len];
+        int start = chunk.position();
+        for (int x = 0; x < len; x += 1) {
+            chars[x] = (char) (chunk.get(start + x)
+                               & EnigmaInputStream.MAX_BYTE_CHAR);
+        }
+        m.convertRun(chars, 0, len, chars, 0, copy);
+        ByteBuffer out = chunk.hasArray() ? chunk : ByteBuffer.allocate(len);
+        int at = chunk.hasArray() ? start : 0;
+        for (int x = 0; x < len; x += 1) {
+            out.put(at + x, (byte) chars[x]);
+        }
+        return out;
+    };
+
+    /** Subscription given to a second subscriber, which is refused. */
+    private static final Flow.Subscription CANCELLED =
+        new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+    /** True iff characters outside the alphabet pass through. */
+    private final boolean _copyOthers;
+    /** Reaches the characters of a chunk. */
+    private final Codec<T> _codec;
+    /** My subscriber, once subscribed. */
+    private volatile Flow.Subscriber<? super T> _downstream;
+    /** True once _downstream's onSubscribe has returned; until then,
+     *  subscribe() and not onError or onComplete delivers the terminal
+     *  signal. */
+    private boolean _ready;
+    /** My upstream subscription, once subscribed. */
+    private Flow.Subscription _upstream;
+    /** Demand received before _upstream arrived. */
+    private long _pendingDemand;
+    /** True once the stream is cancelled. */
+    private volatile boolean _cancelled;
+    /** True once upstream has completed. */
+    private boolean _done;
+    /** Upstream or conversion failure, if any. */
+    private Throwable _failure;
+}
@@ -0,0 +1,300 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.KeySearchTest.PLAIN;
+
+/** The suite of all JUnit tests for the EnigmaProcessor class.
+ *  @author Andrew Tom
+ */
+public class EnigmaProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Setting used by the tests. */
+    static final String SETTING = "* B Beta III IV I AXLE (HQ) (EX) (IP)";
+
+    /** Collects the text of the chunks it receives, requesting BATCH at
+     *  a time. */
+    static class Collector<T> implements Flow.Subscriber<T> {
+
+        /** A collector requesting BATCH chunks at a time. */
+        Collector(int batch) {
+            _batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(_batch);
+        }
+
+        @Override
+        public void onNext(T chunk) {
+            _received += 1;
+            if (chunk instanceof CharBuffer) {
+                _text.append((CharBuffer) chunk);
+            } else {
+                _text.append(StandardCharsets.ISO_8859_1.decode(
+                    (ByteBuffer) chunk));
+            }
+            if (_received % _batch == 0) {
+                _subscription.request(_batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable failure) {
+            _failure = failure;
+            _finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            _finished.countDown();
+        }
+
+        /** Wait until the stream ends. */
+        void await() throws InterruptedException {
+            assertTrue(_finished.await(20, TimeUnit.SECONDS));
+        }
+
+        /** Chunks requested per request. */
+        private final int _batch;
+        /** My subscription. */
+        private Flow.Subscription _subscription;
+        /** Chunks received. */
+        private int _received;
+        /** Text received. */
+        private final StringBuilder _text = new StringBuilder();
+        /** Failure received, if any. */
+        private volatile Throwable _failure;
+        /** Released when the stream ends. */
+        private final CountDownLatch _finished = new CountDownLatch(1);
+    }
+
+    /** Return PLAIN converted with SETTING. */
+    private static String expected() {
+        return MachineSpecTest.navalSpec().newMachine(SETTING).convert(PLAIN);
+    }
+
+    @Test
+    public void convertsChars() throws InterruptedException {
+        EnigmaProcessor<CharBuffer> proc = EnigmaProcessor.chars(
+            MachineSpecTest.navalSpec(), SETTING, false);
+        Collector<CharBuffer> sink = new Collector<CharBuffer>(3);
+        proc.subscribe(sink);
+        try (SubmissionPublisher<CharBuffer> pub =
+                 new SubmissionPublisher<CharBuffer>()) {
+            pub.subscribe(proc);
+            for (int x = 0; x < PLAIN.length(); x += 11) {
+                String chunk =
+                    PLAIN.substring(x, Math.min(x + 11, PLAIN.length()));
+                pub.submit(x % 2 == 0 ? CharBuffer.wrap(chunk.toCharArray())
+                           : CharBuffer.wrap(chunk));
+            }
+        }
+        sink.await();
+        assertNull(sink._failure);
+        assertEquals(expected(), sink._text.toString());
+    }
+
+    @Test
+    public void convertsBytes() throws InterruptedException {
+        EnigmaProcessor<ByteBuffer> proc = EnigmaProcessor.bytes(
+            MachineSpecTest.navalSpec(), SETTING, true);
+        Collector<ByteBuffer> sink = new Collector<ByteBuffer>(1);
+        proc.subscribe(sink);
+        try (SubmissionPublisher<ByteBuffer> pub =
+                 new SubmissionPublisher<ByteBuffer>()) {
+            pub.subscribe(proc);
+            byte[] bytes = (PLAIN + "\n").getBytes(StandardCharsets.ISO_8859_1);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length - 20);
+            direct.put(bytes, 20, bytes.length - 20).flip();
+            pub.submit(ByteBuffer.wrap(bytes, 0, 20).slice());
+            pub.submit(direct);
+        }
+        sink.await();
+        assertNull(sink._failure);
+        assertEquals(expected() + "\n", sink._text.toString());
+    }
+
+    /** A publisher of endless chunks that records what is requested. */
+    static class Source implements Flow.Publisher<CharBuffer> {
+        @Override
+        public void subscribe(Flow.Subscriber<? super CharBuffer> sub) {
+            sub.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    _requested += n;
+                    for (long k = 0; k < n; k += 1) {
+                        sub.onNext(CharBuffer.wrap("HELLOWORLD"));
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    _cancelled = true;
+                }
+            });
+        }
+
+        /** Total requested. */
+        private long _requested;
+        /** True once cancelled. */
+        private boolean _cancelled;
+    }
+
+    @Test
+    public void honorsDemand() {
+        EnigmaProcessor<CharBuffer> proc = EnigmaProcessor.chars(
+            MachineSpecTest.navalSpec(), SETTING, false);
+        Source source = new Source();
+        int[] received = new int[1];
+        Flow.Subscription[] sub = new Flow.Subscription[1];
+        proc.subscribe(new Flow.Subscriber<CharBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                sub[0] = s;
+                s.request(2);
+            }
+
+            @Override
+            public void onNext(CharBuffer chunk) {
+                received[0] += 1;
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        source.subscribe(proc);
+        assertEquals(2, source._requested);
+        assertEquals(2, received[0]);
+        sub[0].request(3);
+        assertEquals(5, source._requested);
+        assertEquals(5, received[0]);
+        sub[0].cancel();
+        assertTrue(source._cancelled);
+    }
+
+    @Test
+    public void badCharacterFails() throws InterruptedException {
+        EnigmaProcessor<CharBuffer> proc = EnigmaProcessor.chars(
+            MachineSpecTest.navalSpec(), SETTING, false);
+        Collector<CharBuffer> sink = new Collector<CharBuffer>(4);
+        proc.subscribe(sink);
+        Source source = new Source() {
+            @Override
+            public void subscribe(Flow.Subscriber<? super CharBuffer> s) {
+                s.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        s.onNext(CharBuffer.wrap("hello"));
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+            }
+        };
+        source.subscribe(proc);
+        sink.await();
+        assertTrue(sink._failure instanceof EnigmaException);
+    }
+
+    @Test
+    public void failureWhileSubscribing() throws InterruptedException {
+        EnigmaProcessor<CharBuffer> proc = EnigmaProcessor.chars(
+            MachineSpecTest.navalSpec(), SETTING, false);
+        StringBuffer events = new StringBuffer();
+        proc.subscribe(new Flow.Subscriber<CharBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                events.append("subscribe ");
+                Thread upstream = new Thread(() ->
+                    proc.onError(new IllegalStateException("upstream")));
+                upstream.start();
+                try {
+                    upstream.join();
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                }
+                events.append("subscribed ");
+            }
+
+            @Override
+            public void onNext(CharBuffer chunk) {
+                events.append("next ");
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                events.append("error ");
+            }
+
+            @Override
+            public void onComplete() {
+                events.append("complete ");
+            }
+        });
+        assertEquals("subscribe subscribed error ", events.toString());
+    }
+
+    @Test
+    public void concurrentProcessors() throws InterruptedException {
+        MachineSpec spec = MachineSpecTest.navalSpec();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            int n = 6;
+            ArrayList<Collector<CharBuffer>> sinks =
+                new ArrayList<Collector<CharBuffer>>();
+            ArrayList<SubmissionPublisher<CharBuffer>> pubs =
+                new ArrayList<SubmissionPublisher<CharBuffer>>();
+            for (int p = 0; p < n; p += 1) {
+                EnigmaProcessor<CharBuffer> proc =
+                    EnigmaProcessor.chars(spec, SETTING, false);
+                sinks.add(new Collector<CharBuffer>(2));
+                proc.subscribe(sinks.get(p));
+                pubs.add(new SubmissionPublisher<CharBuffer>(pool, 4));
+                pubs.get(p).subscribe(proc);
+            }
+            for (int x = 0; x < PLAIN.length(); x += 5) {
+                String chunk =
+                    PLAIN.substring(x, Math.min(x + 5, PLAIN.length()));
+                for (SubmissionPublisher<CharBuffer> pub : pubs) {
+                    pub.submit(CharBuffer.wrap(chunk.toCharArray()));
+                }
+            }
+            for (int p = 0; p < n; p += 1) {
+                pubs.get(p).close();
+                sinks.get(p).await();
+                assertEquals(expected(), sinks.get(p)._text.toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package enigma;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that converts the characters of another Reader through a
+ *  Machine as they are read, converting each buffer in place.
+ *  @author Andrew Tom
+ */
+class EnigmaReader extends FilterReader {
+
+    /** A reader converting the characters of IN with MACHINE.  Characters
+     *  outside the machine's alphabet are an error. */
+    EnigmaReader(Reader in, Machine machine) {
+        this(in, machine, false);
+    }
+
+    /** A reader converting the characters of IN with MACHINE.  When
+     *  COPYOTHERS, characters outside the machine's alphabet (such as
+     *  line terminators) pass through unchanged. */
+    EnigmaReader(Reader in, Machine machine, boolean copyOthers) {
+        super(in);
+        _machine = machine;
+        _copyOthers = copyOthers;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = in.read();
+        if (c < 0) {
+            return c;
+        }
+        _single[0] = (char) c;
+        _machine.convertRun(_single, 0, 1, _single, 0, _copyOthers);
+        return _single[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = in.read(cbuf, off, len);
+        if (n > 0) {
+            _machine.convertRun(cbuf, off, n, cbuf, off, _copyOthers);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        char[] buf = new char[(int) Math.min(n, SKIP_BUFFER)];
+        long skipped = 0;
+        while (skipped < n) {
+            int k = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (k < 0) {
+                break;
+            }
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /** Largest buffer skip() uses. */
+    private static final int SKIP_BUFFER = 8192;
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+
+    /** True iff characters outside the alphabet pass through. */
+    private final boolean _copyOthers;
+
+    /** Buffer for single-character reads. */
+    private final char[] _single = new char[1];
+}
@@ -0,0 +1,442 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A long-running server that converts text with machines built from
+ *  compiled configurations, speaking the frames described in Protocol
+ *  over a loopback TCP or Unix-domain socket.
+ *
+ *  One selector thread accepts connections, reads and splits frames,
+ *  and writes replies, never blocking.  Each session (an OPEN and the
+ *  requests that follow it) keeps its own MachineState and runs its
+ *  requests one at a time, in order, on a small shared worker pool, so
+ *  many sessions on many connections proceed in parallel while each
+ *  machine steps exactly as it would in Main.  Replies are queued on
+ *  their connection and written by the selector thread as the socket
+ *  allows.  A connection with MAX_PENDING requests read but not yet
+ *  answered is not read from until half of them have been written
+ *  back, so a client that pipelines without reading its replies cannot
+ *  make the server buffer without limit.
+ *  @author Andrew Tom
+ */
+final class EnigmaServer implements Closeable {
+
+    /** Requests per connection that may be read but not yet answered. */
+    static final int MAX_PENDING = 1024;
+
+    /** A server on ADDRESS (see Protocol.address) serving CONFIGS, a
+     *  map from config id to spec, with WORKERS worker threads. */
+    EnigmaServer(SocketAddress address, Map<String, MachineSpec> configs,
+                 int workers) {
+        _configs = new HashMap<String, MachineSpec>(configs);
+        try {
+            if (address instanceof UnixDomainSocketAddress) {
+                _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                _unixPath = ((UnixDomainSocketAddress) address).getPath();
+            } else {
+                _server = ServerSocketChannel.open();
+                _unixPath = null;
+            }
+            _server.bind(address);
+            _server.configureBlocking(false);
+            _selector = Selector.open();
+            _server.register(_selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not listen on %s: %s",
+                                        address, excp.getMessage());
+        }
+        _workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "enigma-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Return the address I listen on, with the actual port if I was
+     *  given port 0. */
+    SocketAddress address() {
+        try {
+            return _server.getLocalAddress();
+        } catch (IOException excp) {
+            throw EnigmaException.error("server closed");
+        }
+    }
+
+    /** Return how many times a connection has resumed reading after
+     *  pausing for too many pending requests. */
+    long readResumes() {
+        return _readResumes;
+    }
+
+    /** Serve on a new daemon thread and return it. */
+    Thread start() {
+        Thread thread = new Thread(this::run, "enigma-selector");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /** Serve until close() is called. */
+    void run() {
+        try {
+            while (_server.isOpen()) {
+                _selector.select();
+                if (!_selector.isOpen()) {
+                    break;
+                }
+                for (SelectionKey key : _selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection conn = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            conn.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            conn.write();
+                        }
+                    }
+                }
+                _selector.selectedKeys().clear();
+                for (Connection conn = _ready.poll(); conn != null;
+                     conn = _ready.poll()) {
+                    conn.write();
+                }
+            }
+        } catch (IOException | ClosedSelectorException excp) {
+            /* Closed under us: stop serving. */
+        }
+    }
+
+    /** Stop listening, drop every connection and stop the workers. */
+    @Override
+    public void close() {
+        _workers.shutdownNow();
+        try {
+            _server.close();
+            for (SelectionKey key : _selector.keys()) {
+                key.channel().close();
+            }
+            _selector.close();
+            if (_unixPath != null) {
+                Files.deleteIfExists(_unixPath);
+            }
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not close server: %s",
+                                        excp.getMessage());
+        }
+    }
+
+    /** Accept a pending connection, if any. */
+    private void accept() throws IOException {
+        SocketChannel channel = _server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(_selector,
+                                                SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    /** One client connection and its sessions. */
+    private class Connection {
+
+        /** A connection over CHANNEL registered as KEY. */
+        Connection(SocketChannel channel, SelectionKey key) {
+            _channel = channel;
+            _key = key;
+        }
+
+        /** Read what is available and dispatch every whole frame. */
+        void read() {
+            int n;
+            try {
+                n = _channel.read(_in);
+            } catch (IOException excp) {
+                n = -1;
+            }
+            if (n < 0) {
+                drop();
+                return;
+            }
+            dispatchFrames();
+            updateInterest();
+        }
+
+        /** Dispatch the whole frames in _in until it runs out or too many
+         *  requests are pending, in which case pause reading. */
+        private void dispatchFrames() {
+            _in.flip();
+            while (!_paused && _in.remaining() >= Integer.BYTES) {
+                int len = _in.getInt(_in.position());
+                if (len < Protocol.REQUEST_HEADER || len > Protocol.MAX_FRAME) {
+                    drop();
+                    return;
+                }
+                if (_in.remaining() < Integer.BYTES + len) {
+                    if (_in.capacity() < Integer.BYTES + len) {
+                        ByteBuffer bigger =
+                            ByteBuffer.allocate(Integer.BYTES + len);
+                        bigger.put(_in);
+                        _in = bigger;
+                        return;
+                    }
+                    break;
+                }
+                _in.getInt();
+                byte type = _in.get();
+                int request = _in.getInt();
+                int session = _in.getInt();
+                String payload =
+                    Protocol.text(_in, len - Protocol.REQUEST_HEADER);
+                dispatch(type, request, session, payload);
+                _paused = _pending >= MAX_PENDING;
+            }
+            _in.compact();
+        }
+
+        /** Carry out request REQUEST of type TYPE for session SESSION with
+         *  PAYLOAD. */
+        private void dispatch(byte type, int request, int session,
+                              String payload) {
+            Session s = _sessions.get(session);
+            _pending += 1;
+            switch (type) {
+            case Protocol.OPEN:
+                if (s != null) {
+                    send(Protocol.ERROR, request, "session already open");
+                    return;
+                }
+                Session opened = new Session();
+                _sessions.put(session, opened);
+                opened.submit(request, () -> opened.open(payload));
+                break;
+            case Protocol.CONVERT:
+                if (s == null) {
+                    send(Protocol.ERROR, request, "no such session");
+                    return;
+                }
+                s.submit(request, () -> s.convert(payload));
+                break;
+            case Protocol.CLOSE:
+                if (s == null) {
+                    send(Protocol.ERROR, request, "no such session");
+                    return;
+                }
+                _sessions.remove(session);
+                s.submit(request, () -> "");
+                break;
+            default:
+                send(Protocol.ERROR, request, "unknown request type");
+            }
+        }
+
+        /** Queue a reply with STATUS to REQUEST carrying PAYLOAD.  May be
+         *  called from any thread. */
+        void send(byte status, int request, String payload) {
+            if (_closed) {
+                return;
+            }
+            _out.add(Protocol.reply(status, request, payload));
+            _ready.add(this);
+            _selector.wakeup();
+        }
+
+        /** Write queued replies until the socket would block, resume
+         *  reading if enough of them have gone, and ask to be told when
+         *  the socket can take more. */
+        void write() {
+            if (!_key.isValid()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buf = _out.peek(); buf != null;
+                     buf = _out.peek()) {
+                    _channel.write(buf);
+                    if (buf.hasRemaining()) {
+                        break;
+                    }
+                    _out.poll();
+                    _pending -= 1;
+                }
+            } catch (IOException excp) {
+                drop();
+                return;
+            }
+            if (_paused && _pending < MAX_PENDING / 2) {
+                _paused = false;
+                _readResumes += 1;
+                dispatchFrames();
+            }
+            updateInterest();
+        }
+
+        /** Ask the selector for reads unless reading is paused, and for
+         *  writes while replies are queued. */
+        private void updateInterest() {
+            if (_key.isValid()) {
+                _key.interestOps((_paused ? 0 : SelectionKey.OP_READ)
+                                 | (_out.isEmpty()
+                                    ? 0 : SelectionKey.OP_WRITE));
+            }
+        }
+
+        /** Close the connection and discard its sessions and replies. */
+        private void drop() {
+            _closed = true;
+            _sessions.clear();
+            _out.clear();
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                /* Already gone. */
+            }
+        }
+
+        /** One session: a machine and the requests waiting for it. */
+        private class Session {
+
+            /** Queue TASK, which returns the reply payload for REQUEST,
+             *  to run after the session's earlier requests. */
+            void submit(int request, Task task) {
+                synchronized (this) {
+                    _tasks.add(() -> {
+                        try {
+                            send(Protocol.OK, request, task.run());
+                        } catch (RuntimeException excp) {
+                            send(Protocol.ERROR, request,
+                                 String.valueOf(excp.getMessage()));
+                        }
+                    });
+                    if (_running) {
+                        return;
+                    }
+                    _running = true;
+                }
+                _workers.execute(this::drain);
+            }
+
+            /** Run queued tasks until none is left. */
+            private void drain() {
+                while (true) {
+                    Runnable task;
+                    synchronized (this) {
+                        if (_closed) {
+                            _tasks.clear();
+                        }
+                        task = _tasks.poll();
+                        if (task == null) {
+                            _running = false;
+                            return;
+                        }
+                    }
+                    task.run();
+                }
+            }
+
+            /** Set up my machine from REQUEST, a config id, newline and
+             *  setting line, and return the empty reply. */
+            String open(String request) {
+                int newline = request.indexOf('\n');
+                MachineSpec spec = newline < 0 ? null
+                    : _configs.get(request.substring(0, newline));
+                if (spec == null) {
+                    _failure = "no such config";
+                    throw EnigmaException.error(_failure);
+                }
+                try {
+                    _state = spec.parse(request.substring(newline + 1))
+                        .newState();
+                } catch (RuntimeException excp) {
+                    _failure = "bad setting: " + excp.getMessage();
+                    throw EnigmaException.error(_failure);
+                }
+                return "";
+            }
+
+            /** Return TEXT converted by my machine. */
+            String convert(String text) {
+                if (_state == null) {
+                    throw EnigmaException.error(_failure);
+                }
+                return _state.convert(text);
+            }
+
+            /** Requests waiting to run. */
+            private final ArrayDeque<Runnable> _tasks =
+                new ArrayDeque<Runnable>();
+            /** True iff a worker is draining _tasks. */
+            private boolean _running;
+            /** Machine state, once opened. */
+            private MachineState _state;
+            /** Why the open failed, if it did. */
+            private String _failure;
+        }
+
+        /** The socket. */
+        private final SocketChannel _channel;
+        /** Its registration with _selector. */
+        private final SelectionKey _key;
+        /** Bytes read but not yet dispatched. */
+        private ByteBuffer _in = ByteBuffer.allocate(1 << 16);
+        /** Replies waiting to be written. */
+        private final ConcurrentLinkedQueue<ByteBuffer> _out =
+            new ConcurrentLinkedQueue<ByteBuffer>();
+        /** Requests read whose replies are not yet written; used only on
+         *  the selector thread. */
+        private int _pending;
+        /** True from when _pending reaches MAX_PENDING until it falls
+         *  below half that; used only on the selector thread. */
+        private boolean _paused;
+        /** True once the connection is dropped. */
+        private volatile boolean _closed;
+        /** Open sessions by id; used only on the selector thread. */
+        private final HashMap<Integer, Session> _sessions =
+            new HashMap<Integer, Session>();
+    }
+
+    /** The work of one request. */
+    private interface Task {
+        /** Return the reply payload. */
+        String run();
+    }
+
+    /** Specs by config id. */
+    private final HashMap<String, MachineSpec> _configs;
+    /** Listening socket. */
+    private final ServerSocketChannel _server;
+    /** Path of the socket file, for a Unix-domain socket. */
+    private final Path _unixPath;
+    /** Selector for the listening socket and every connection. */
+    private final Selector _selector;
+    /** Runs session requests. */
+    private final ExecutorService _workers;
+    /** Count returned by readResumes(); written only by the selector
+     *  thread. */
+    private volatile long _readResumes;
+    /** Connections with replies queued since the last select. */
+    private final ConcurrentLinkedQueue<Connection> _ready =
+        new ConcurrentLinkedQueue<Connection>();
+}
@@ -0,0 +1,231 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static enigma.KeySearchTest.PLAIN;
+
+/** The suite of all JUnit tests for EnigmaServer, EnigmaClient and
+ *  LoadGenerator.
+ *  @author Andrew Tom
+ */
+public class EnigmaServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Setting used by the tests. */
+    static final String SETTING = "* B Beta III IV I AXLE (HQ) (EX) (IP)";
+
+    /** Return a server on ADDRESS serving the naval spec as "naval",
+     *  already started. */
+    private static EnigmaServer server(SocketAddress address) {
+        HashMap<String, MachineSpec> configs =
+            new HashMap<String, MachineSpec>();
+        configs.put("naval", MachineSpecTest.navalSpec());
+        EnigmaServer server = new EnigmaServer(address, configs, 2);
+        server.start();
+        return server;
+    }
+
+    /** Return PLAIN as converted by SETTING. */
+    private static String expected() {
+        return MachineSpecTest.navalSpec().newMachine(SETTING).convert(PLAIN);
+    }
+
+    @Test
+    public void pipelinedChunks() {
+        try (EnigmaServer server = server(Protocol.address("0"));
+             EnigmaClient client = new EnigmaClient(server.address())) {
+            int session = client.newSession();
+            CompletableFuture<String> opened =
+                client.openAsync(session, "naval", SETTING);
+            List<CompletableFuture<String>> chunks =
+                new ArrayList<CompletableFuture<String>>();
+            for (int x = 0; x < PLAIN.length(); x += 7) {
+                chunks.add(client.convertAsync(session, PLAIN.substring(
+                    x, Math.min(x + 7, PLAIN.length()))));
+            }
+            StringBuilder result = new StringBuilder();
+            for (CompletableFuture<String> chunk : chunks) {
+                result.append(chunk.join());
+            }
+            assertEquals("", opened.join());
+            assertEquals(expected(), result.toString());
+            client.close(session);
+        }
+    }
+
+    @Test
+    public void manySessions() {
+        try (EnigmaServer server = server(Protocol.address("0"));
+             EnigmaClient client = new EnigmaClient(server.address())) {
+            int[] sessions = new int[5];
+            for (int s = 0; s < sessions.length; s += 1) {
+                sessions[s] = client.open("naval", SETTING);
+            }
+            List<CompletableFuture<String>> replies =
+                new ArrayList<CompletableFuture<String>>();
+            for (int x = 0; x < PLAIN.length(); x += 10) {
+                String chunk =
+                    PLAIN.substring(x, Math.min(x + 10, PLAIN.length()));
+                for (int s : sessions) {
+                    replies.add(client.convertAsync(s, chunk));
+                }
+            }
+            for (int s = 0; s < sessions.length; s += 1) {
+                StringBuilder result = new StringBuilder();
+                for (int r = s; r < replies.size(); r += sessions.length) {
+                    result.append(replies.get(r).join());
+                }
+                assertEquals(expected(), result.toString());
+            }
+        }
+    }
+
+    @Test
+    public void errors() {
+        try (EnigmaServer server = server(Protocol.address("0"));
+             EnigmaClient client = new EnigmaClient(server.address())) {
+            assertFails(() -> client.open("nosuch", SETTING));
+            assertFails(() -> client.open("naval", "* B Beta III"));
+            assertFails(() -> client.convert(99, "ABC"));
+            int session = client.open("naval", SETTING);
+            assertFails(() -> client.convert(session, "abc"));
+            assertEquals(expected().substring(0, 3),
+                         client.convert(session, PLAIN.substring(0, 3)));
+        }
+    }
+
+    /** Check that BODY throws an EnigmaException. */
+    private static void assertFails(Runnable body) {
+        try {
+            body.run();
+            fail("no error");
+        } catch (EnigmaException | CompletionException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void unixSocket() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path socket = dir.resolve("enigma.sock");
+        try (EnigmaServer server =
+                 server(Protocol.address(Protocol.UNIX_PREFIX + socket));
+             EnigmaClient client = new EnigmaClient(server.address())) {
+            int session = client.open("naval", SETTING);
+            assertEquals(expected(), client.convert(session, PLAIN));
+        } finally {
+            Files.deleteIfExists(socket);
+            Files.delete(dir);
+        }
+    }
+
+    /** Requests sent by unreadClient. */
+    static final int FLOOD = 50000;
+
+    @Test
+    public void unreadClientStalls() throws Exception {
+        String text = "A".repeat(1000);
+        try (EnigmaServer server = server(Protocol.address("0"));
+             SocketChannel channel = SocketChannel.open(server.address())) {
+            Thread writer = new Thread(() -> {
+                try {
+                    write(channel, Protocol.request(Protocol.OPEN, 0, 1,
+                                                    "naval\n" + SETTING));
+                    for (int r = 1; r <= FLOOD; r += 1) {
+                        write(channel, Protocol.request(Protocol.CONVERT,
+                                                        r, 1, text));
+                    }
+                } catch (IOException excp) {
+                    /* Reported by the reads below. */
+                }
+            });
+            writer.start();
+            writer.join(2000);
+            assertTrue("server read without bound", writer.isAlive());
+            ByteBuffer header =
+                ByteBuffer.allocate(Integer.BYTES + Protocol.REPLY_HEADER);
+            for (int r = 0; r <= FLOOD; r += 1) {
+                header.clear();
+                read(channel, header);
+                header.flip();
+                int len = header.getInt();
+                assertEquals(Protocol.OK, header.get());
+                read(channel, ByteBuffer.allocate(len
+                                                  - Protocol.REPLY_HEADER));
+            }
+            writer.join();
+            long resumes = server.readResumes();
+            assertTrue(resumes > 0);
+            assertTrue("resumed reading " + resumes + " times",
+                       resumes <= FLOOD / (EnigmaServer.MAX_PENDING / 2));
+        }
+    }
+
+    /** Write all of FRAME to CHANNEL. */
+    private static void write(SocketChannel channel, ByteBuffer frame)
+        throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /** Fill BUF from CHANNEL. */
+    private static void read(SocketChannel channel, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            assertTrue(channel.read(buf) >= 0);
+        }
+    }
+
+    @Test
+    public void loadReport() {
+        try (EnigmaServer server = server(Protocol.address("0"))) {
+            LoadGenerator load = new LoadGenerator(server.address(), "naval",
+                                                   SETTING, PLAIN);
+            LoadGenerator.Report report = load.run(2, 200, 8);
+            assertEquals(400, report.requests());
+            assertTrue(report.percentile(0.5) <= report.percentile(0.99));
+            assertTrue(report.throughput() > 0);
+        }
+    }
+
+    @Test
+    public void loadEdgeCases() {
+        try (EnigmaServer server = server(Protocol.address("0"))) {
+            LoadGenerator load = new LoadGenerator(server.address(), "naval",
+                                                   SETTING, PLAIN);
+            LoadGenerator.Report empty = load.run(1, 0, 1);
+            assertEquals(0, empty.requests());
+            assertEquals(0, empty.percentile(0.99));
+            assertTrue(empty.toString().startsWith("0 requests"));
+            assertFails(() -> load.run(1, 10, 0));
+            LoadGenerator bad = new LoadGenerator(server.address(), "naval",
+                                                  SETTING, "abc");
+            try {
+                bad.run(1, 10, 4);
+                fail("no error");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+}
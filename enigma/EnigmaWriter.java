@@ -0,0 +1,69 @@
+package enigma;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that converts characters through a Machine before passing
+ *  them on to another Writer, using one reusable buffer.
+ *  @author Andrew Tom
+ */
+class EnigmaWriter extends FilterWriter {
+
+    /** Size of the conversion buffer. */
+    static final int BUFFER_SIZE = 8192;
+
+    /** A writer converting characters with MACHINE and writing them to
+     *  OUT.  Characters outside the machine's alphabet are an error. */
+    EnigmaWriter(Writer out, Machine machine) {
+        this(out, machine, false);
+    }
+
+    /** A writer converting characters with MACHINE and writing them to
+     *  OUT.  When COPYOTHERS, characters outside the machine's alphabet
+     *  (such as line terminators) pass through unchanged. */
+    EnigmaWriter(Writer out, Machine machine, boolean copyOthers) {
+        super(out);
+        _machine = machine;
+        _copyOthers = copyOthers;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        _buffer[0] = (char) c;
+        _machine.convertRun(_buffer, 0, 1, _buffer, 0, _copyOthers);
+        out.write(_buffer, 0, 1);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, BUFFER_SIZE);
+            _machine.convertRun(cbuf, off, n, _buffer, 0, _copyOthers);
+            out.write(_buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, BUFFER_SIZE);
+            str.getChars(off, off + n, _buffer, 0);
+            _machine.convertRun(_buffer, 0, n, _buffer, 0, _copyOthers);
+            out.write(_buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Machine doing the conversion. */
+    private final Machine _machine;
+
+    /** True iff characters outside the alphabet pass through. */
+    private final boolean _copyOthers;
+
+    /** Conversion buffer. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+}
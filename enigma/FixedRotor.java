@@ -11,4 +11,11 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    @Override
+    Rotor copy() {
+        FixedRotor result = new FixedRotor(name(), permutation());
+        result.copyState(this);
+        return result;
+    }
+
 }
@@ -0,0 +1,187 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Writes message lines in fixed-size groups of characters separated by
+ *  single spaces, optionally wrapping lines at a maximum width.  Text is
+ *  assembled in one reusable buffer that is handed to the underlying
+ *  Writer only when it fills or on flush().
+ *  @author Andrew Tom
+ */
+class GroupedWriter {
+
+    /** Default size of the output buffer. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A writer sending its output to OUT in groups of GROUPSIZE
+     *  characters.  If LINEWIDTH is positive, a message that would run
+     *  past LINEWIDTH columns continues on a new line at a group
+     *  boundary; otherwise each message is one line. */
+    GroupedWriter(Writer out, int groupSize, int lineWidth) {
+        if (groupSize <= 0) {
+            throw EnigmaException.error("Group size must be positive");
+        }
+        _out = out;
+        _groupSize = groupSize;
+        _lineWidth = lineWidth;
+    }
+
+    /** Convert each character of LINE with M, ignoring whitespace, and
+     *  write the result as one grouped message.  If LINE holds a
+     *  character outside M's alphabet, nothing of it is written. */
+    void writeMessage(Machine m, CharSequence line) {
+        Alphabet alpha = m.alphabet();
+        int sep = LINE_SEPARATOR.length();
+        if ((long) (2 + sep) * line.length() + sep
+            > _buffer.length - _length) {
+            check(alpha, line);
+        }
+        int converted = 0;
+        startMessage();
+        for (int x = 0; x < line.length(); x += 1) {
+            char cur = line.charAt(x);
+            if (isSpace(cur)) {
+                continue;
+            }
+            int charInt = alpha.indexOf(cur);
+            if (charInt < 0) {
+                _length = _messageStart;
+                throw EnigmaException.error("character %c not in alphabet",
+                                            cur);
+            }
+            put(alpha.toChar(m.convert(charInt)));
+            converted += 1;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.listener().charactersConverted(converted);
+        }
+        newLine();
+    }
+
+    /** Throw an error if LINE holds a character that is neither
+     *  whitespace nor in ALPHA.  Used when a message might not fit in
+     *  the buffer, since part of it could then be drained before a bad
+     *  character was found. */
+    private static void check(Alphabet alpha, CharSequence line) {
+        for (int x = 0; x < line.length(); x += 1) {
+            char cur = line.charAt(x);
+            if (!isSpace(cur) && alpha.indexOf(cur) < 0) {
+                throw EnigmaException.error("character %c not in alphabet",
+                                            cur);
+            }
+        }
+    }
+
+    /** Write MSG, ignoring whitespace, as one grouped message. */
+    void writeGrouped(CharSequence msg) {
+        startMessage();
+        for (int x = 0; x < msg.length(); x += 1) {
+            char cur = msg.charAt(x);
+            if (!isSpace(cur)) {
+                put(cur);
+            }
+        }
+        newLine();
+    }
+
+    /** End the current line. */
+    void newLine() {
+        for (int x = 0; x < LINE_SEPARATOR.length(); x += 1) {
+            append(LINE_SEPARATOR.charAt(x));
+        }
+        _column = 0;
+        _inGroup = 0;
+    }
+
+    /** Send everything buffered to the underlying Writer and flush it. */
+    void flush() {
+        drain();
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not write output");
+        }
+    }
+
+    /** Begin a new message. */
+    private void startMessage() {
+        _messageStart = _length;
+        _column = 0;
+        _inGroup = 0;
+    }
+
+    /** Add message character C, starting a new group (and possibly a
+     *  new line) as needed. */
+    private void put(char c) {
+        if (_inGroup == _groupSize) {
+            if (_lineWidth > 0 && _column + 1 + _groupSize > _lineWidth) {
+                newLine();
+            } else {
+                append(' ');
+                _column += 1;
+            }
+            _inGroup = 0;
+        }
+        append(c);
+        _column += 1;
+        _inGroup += 1;
+    }
+
+    /** Add C to the buffer. */
+    private void append(char c) {
+        if (_length == _buffer.length) {
+            drain();
+        }
+        _buffer[_length] = c;
+        _length += 1;
+    }
+
+    /** Pass the buffer's contents to the underlying Writer. */
+    private void drain() {
+        try {
+            _out.write(_buffer, 0, _length);
+            if (Metrics.ENABLED) {
+                Metrics.listener().charsOut(_length);
+            }
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not write output");
+        }
+        _length = 0;
+        _messageStart = 0;
+    }
+
+    /** Return true iff C is a whitespace character in the sense of the
+     *  regular expression \s. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Line terminator written after each line. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Destination of the output. */
+    private final Writer _out;
+
+    /** Characters per group. */
+    private final int _groupSize;
+
+    /** Maximum line width, or 0 for no limit. */
+    private final int _lineWidth;
+
+    /** Output buffer. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+
+    /** Number of characters in _buffer. */
+    private int _length;
+
+    /** Buffer index at which the current message starts. */
+    private int _messageStart;
+
+    /** Characters on the current line. */
+    private int _column;
+
+    /** Characters in the current group. */
+    private int _inGroup;
+}
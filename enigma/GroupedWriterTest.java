@@ -0,0 +1,78 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import static enigma.MachineTest.navalMachine;
+
+/** The suite of all JUnit tests for the GroupedWriter class.
+ *  @author Andrew Tom
+ */
+public class GroupedWriterTest {
+
+    /** Line terminator used by the writer. */
+    private static final String NL = System.lineSeparator();
+
+    @Test
+    public void groupsOfFive() {
+        StringWriter sink = new StringWriter();
+        GroupedWriter w = new GroupedWriter(sink, 5, 0);
+        w.writeGrouped("ABCDEFGHIJ KL");
+        w.writeGrouped("");
+        w.writeGrouped("ABCDE");
+        w.flush();
+        assertEquals("ABCDE FGHIJ KL" + NL + NL + "ABCDE" + NL,
+                     sink.toString());
+    }
+
+    @Test
+    public void lineWidth() {
+        StringWriter sink = new StringWriter();
+        GroupedWriter w = new GroupedWriter(sink, 2, 5);
+        w.writeGrouped("ABCDEFG");
+        w.flush();
+        assertEquals("AB CD" + NL + "EF G" + NL, sink.toString());
+    }
+
+    @Test
+    public void convertsMessage() {
+        StringWriter sink = new StringWriter();
+        GroupedWriter w = new GroupedWriter(sink, 5, 0);
+        Machine m = navalMachine("AXLE", "(HQ) (EX) (IP) (TR) (BY)");
+        w.writeMessage(m, "FROM HIS SHOULDER HIAWATHA");
+        w.flush();
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + NL, sink.toString());
+    }
+
+    @Test
+    public void badMessageDiscarded() {
+        StringWriter sink = new StringWriter();
+        GroupedWriter w = new GroupedWriter(sink, 5, 0);
+        Machine m = navalMachine("AXLE", "");
+        try {
+            w.writeMessage(m, "FROM his");
+            fail("lower case accepted");
+        } catch (EnigmaException excp) {
+            w.flush();
+            assertEquals("", sink.toString());
+        }
+    }
+
+    @Test
+    public void longBadMessageDiscarded() {
+        StringWriter sink = new StringWriter();
+        GroupedWriter w = new GroupedWriter(sink, 5, 0);
+        Machine m = navalMachine("AXLE", "");
+        String msg = "A".repeat(GroupedWriter.BUFFER_SIZE * 2) + "a";
+        try {
+            w.writeMessage(m, msg);
+            fail("lower case accepted");
+        } catch (EnigmaException excp) {
+            w.flush();
+            assertEquals("", sink.toString());
+        }
+    }
+
+}
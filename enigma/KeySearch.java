@@ -0,0 +1,280 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A ciphertext-only search for the rotor settings of a message
+ *  encrypted with rotors from a MachineSpec's library.  Every choice of
+ *  reflector, fixed rotors, moving rotor order and start positions is
+ *  tried, with given ring settings and plugboard.  Each candidate
+ *  decrypts the ciphertext and is scored by the index of coincidence
+ *  of the result, which is highest for natural-language text.  The best
+ *  TOPK candidates are kept.
+ *
+ *  Candidates are numbered, rotor arrangement first and start positions
+ *  second, and the range of numbers is split recursively over a
+ *  ForkJoinPool, so idle workers steal the remaining work.  Each leaf
+ *  runs its candidates through its own StateBatch and scores them
+ *  from primitive letter counts.  The search can be watched with
+ *  searched() and total(), and stopped early with cancel().
+ *  @author Andrew Tom
+ */
+final class KeySearch {
+
+    /** Candidates evaluated together in one StateBatch. */
+    static final int BLOCK = 256;
+
+    /** Candidates below which a range is not split further. */
+    static final int LEAF = 16 * BLOCK;
+
+    /** One scored candidate. */
+    static final class Result {
+
+        /** A candidate numbered INDEX, with setting line SETTING and
+         *  score SCORE. */
+        Result(long index, String setting, double score) {
+            _index = index;
+            _setting = setting;
+            _score = score;
+        }
+
+        /** Return my setting line. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my index of coincidence. */
+        double score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.5f %s", _score, _setting);
+        }
+
+        /** Candidate number, used to break ties. */
+        private final long _index;
+        /** Setting line. */
+        private final String _setting;
+        /** Index of coincidence. */
+        private final double _score;
+    }
+
+    /** Best results first; ties go to the lower candidate number. */
+    static final Comparator<Result> BEST_FIRST =
+        Comparator.comparingDouble((Result r) -> -r._score)
+        .thenComparingLong(r -> r._index);
+
+    /** A search over SPEC for the settings of CIPHERTEXT (whitespace
+     *  ignored), keeping the TOPK best.  RINGS gives the ring setting
+     *  of each non-reflector slot, or is empty for all 0; PLUGBOARD is in
+     *  cycle notation. */
+    KeySearch(MachineSpec spec, String ciphertext, int topK, String rings,
+              String plugboard) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _numRotors = spec.numRotors();
+        if (topK < 1) {
+            throw EnigmaException.error("topK must be positive");
+        }
+        _topK = topK;
+
+        StringBuilder text = new StringBuilder();
+        for (int x = 0; x < ciphertext.length(); x += 1) {
+            char c = ciphertext.charAt(x);
+            if (!Character.isWhitespace(c)) {
+                text.append(c);
+            }
+        }
+        if (text.length() < 2) {
+            throw EnigmaException.error("ciphertext too short");
+        }
+        _cipher = new int[text.length()];
+        for (int x = 0; x < _cipher.length; x += 1) {
+            _cipher[x] = _alphabet.toInt(text.charAt(x));
+        }
+
+        _keys = new KeySpace(spec, rings);
+        _plugText = plugboard;
+        _plug = new Permutation(plugboard, _alphabet).forwardTable();
+    }
+
+    /** A search keeping the TOPK best, with rings at 0 and no
+     *  plugboard. */
+    KeySearch(MachineSpec spec, String ciphertext, int topK) {
+        this(spec, ciphertext, topK, "", "");
+    }
+
+    /** Return the number of candidates. */
+    long total() {
+        return _keys.size();
+    }
+
+    /** Return the number of candidates scored so far. */
+    long searched() {
+        return _searched.sum();
+    }
+
+    /** Stop the search soon; results found so far are kept. */
+    void cancel() {
+        _cancelled = true;
+    }
+
+    /** Return true iff cancel() has been called. */
+    boolean cancelled() {
+        return _cancelled;
+    }
+
+    /** Run the search in POOL and return its best results, best first.
+     *  After cancel(), returns the best of what was searched. */
+    List<Result> search(ForkJoinPool pool) {
+        pool.invoke(new Range(0, _keys.size()));
+        return results();
+    }
+
+    /** Run the search in the common pool. */
+    List<Result> search() {
+        return search(ForkJoinPool.commonPool());
+    }
+
+    /** Start the search in POOL and return its task, so that the caller
+     *  can poll searched() or cancel() while it runs.  Call results()
+     *  after the task is done. */
+    ForkJoinTask<?> start(ForkJoinPool pool) {
+        return pool.submit(new Range(0, _keys.size()));
+    }
+
+    /** Return the best results so far, best first. */
+    List<Result> results() {
+        synchronized (_best) {
+            ArrayList<Result> result = new ArrayList<Result>(_best);
+            Collections.sort(result, BEST_FIRST);
+            return result;
+        }
+    }
+
+    /** Searches candidates [lo, hi). */
+    private class Range extends RecursiveAction {
+
+        /** Search candidates LO to HI - 1. */
+        Range(long lo, long hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_cancelled) {
+                return;
+            }
+            if (_hi - _lo > LEAF) {
+                long mid = (_lo + _hi) >>> 1;
+                invokeAll(new Range(_lo, mid), new Range(mid, _hi));
+                return;
+            }
+            Worker worker = new Worker();
+            for (long c = _lo; c < _hi && !_cancelled; c += BLOCK) {
+                worker.score(c, (int) Math.min(BLOCK, _hi - c));
+            }
+        }
+
+        /** First candidate. */
+        private final long _lo;
+        /** Candidate past the last. */
+        private final long _hi;
+    }
+
+    /** Scratch space for scoring blocks of candidates, one per leaf
+     *  Range. */
+    private class Worker {
+
+        /** Score the N candidates from FIRST on. */
+        void score(long first, int n) {
+            for (int l = 0; l < n; l += 1) {
+                _keys.positions(first + l, _positionScratch);
+                _batch.set(l, _keys.arrangement(first + l),
+                           _positionScratch, _keys.rings(), _plug);
+            }
+            Arrays.fill(_counts, 0, n * _size, 0);
+            _batch.convert(_cipher, _cipher.length, null, _counts, n);
+            double norm = (double) _cipher.length * (_cipher.length - 1);
+            for (int l = 0; l < n; l += 1) {
+                long sum = 0;
+                for (int c = l * _size; c < (l + 1) * _size; c += 1) {
+                    sum += (long) _counts[c] * (_counts[c] - 1);
+                }
+                offer(first + l, sum / norm);
+            }
+            _searched.add(n);
+        }
+
+        /** Lanes, one per candidate in a block. */
+        private final StateBatch _batch = new StateBatch(_spec, BLOCK);
+        /** Letter counts per lane. */
+        private final int[] _counts = new int[BLOCK * _size];
+        /** Positions of the candidate being set up. */
+        private final int[] _positionScratch = new int[_numRotors];
+    }
+
+    /** Consider candidate INDEX, whose score is SCORE, for the top K. */
+    private void offer(long index, double score) {
+        if (score < _floor) {
+            return;
+        }
+        synchronized (_best) {
+            if (_best.size() == _topK) {
+                Result worst = _best.peek();
+                if (score < worst._score
+                    || (score == worst._score && index > worst._index)) {
+                    return;
+                }
+            }
+            _best.add(new Result(index, _keys.setting(index, _plugText),
+                                 score));
+            if (_best.size() > _topK) {
+                _best.poll();
+            }
+            if (_best.size() == _topK) {
+                _floor = _best.peek()._score;
+            }
+        }
+    }
+
+    /** Spec searched. */
+    private final MachineSpec _spec;
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of slots. */
+    private final int _numRotors;
+    /** Number of results kept. */
+    private final int _topK;
+    /** Ciphertext as alphabet indices. */
+    private final int[] _cipher;
+    /** Plugboard as given. */
+    private final String _plugText;
+    /** Plugboard forward table. */
+    private final int[] _plug;
+    /** Keys searched, numbered as candidates. */
+    private final KeySpace _keys;
+    /** Candidates scored. */
+    private final LongAdder _searched = new LongAdder();
+    /** True once cancel() is called. */
+    private volatile boolean _cancelled;
+    /** Best results so far, worst at the head. */
+    private final PriorityQueue<Result> _best =
+        new PriorityQueue<Result>(BEST_FIRST.reversed());
+    /** Score below which a candidate cannot enter _best. */
+    private volatile double _floor = Double.NEGATIVE_INFINITY;
+}
@@ -0,0 +1,102 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Andrew Tom
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Plain English text, without spaces. */
+    static final String PLAIN =
+        ("It was the best of times it was the worst of times it was the "
+         + "age of wisdom it was the age of foolishness it was the epoch "
+         + "of belief it was the epoch of incredulity it was the season "
+         + "of light it was the season of darkness it was the spring of "
+         + "hope it was the winter of despair we had everything before "
+         + "us we had nothing before us")
+        .replace(" ", "").toUpperCase();
+
+    /** Return a spec with reflector B, moving rotors I, II and III, and
+     *  two slots, all with pawls. */
+    static MachineSpec smallSpec() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("B",
+            new Permutation(NAVALA.get("B"), UPPER)));
+        String[][] moving = {{"I", "Q"}, {"II", "E"}, {"III", "V"}};
+        for (String[] r : moving) {
+            rotors.add(new MovingRotor(r[0],
+                new Permutation(NAVALA.get(r[0]), UPPER), r[1]));
+        }
+        return new MachineSpec(UPPER, 3, 2, rotors);
+    }
+
+    @Test
+    public void findsKey() {
+        MachineSpec spec = smallSpec();
+        String setting = "* B III I KQ";
+        String cipher = spec.newMachine(setting).convert(PLAIN);
+        KeySearch search = new KeySearch(spec, cipher, 5);
+        assertEquals(6 * 26 * 26, search.total());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        List<KeySearch.Result> best;
+        try {
+            best = search.search(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(5, best.size());
+        assertEquals(setting, best.get(0).setting());
+        assertEquals(search.total(), search.searched());
+        for (int x = 1; x < best.size(); x += 1) {
+            assertTrue(best.get(x - 1).score() >= best.get(x).score());
+        }
+    }
+
+    @Test
+    public void ringsAndPlugboard() {
+        MachineSpec spec = smallSpec();
+        String setting = "* B II III CX AF (AT) (EZ)";
+        String cipher = spec.newMachine(setting).convert(PLAIN);
+        KeySearch search = new KeySearch(spec, cipher, 1, "AF", "(AT) (EZ)");
+        assertEquals(setting, search.search().get(0).setting());
+    }
+
+    @Test
+    public void cancelStopsEarly() throws InterruptedException {
+        MachineSpec spec = MachineSpecTest.navalSpec();
+        KeySearch search = new KeySearch(spec, PLAIN, 3);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ForkJoinTask<?> task = search.start(pool);
+            while (search.searched() == 0) {
+                Thread.sleep(1);
+            }
+            search.cancel();
+            task.join();
+            long searched = search.searched();
+            assertTrue(search.cancelled());
+            assertTrue(searched < search.total());
+            assertEquals(3, search.results().size());
+            Thread.sleep(20);
+            assertEquals(searched, search.searched());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package enigma;
+
+import java.util.ArrayList;
+
+/** The numbered set of machine keys that the searches try: every legal
+ *  choice of reflector, fixed rotors and moving rotor order from a
+ *  MachineSpec's library, combined with every start position of the
+ *  non-reflector slots, under fixed ring settings.  Key i uses rotor
+ *  arrangement i / positions() and start positions i % positions(),
+ *  read as a number in base alphabet size with the leftmost slot most
+ *  significant.
+ *  @author Andrew Tom
+ */
+final class KeySpace {
+
+    /** The keys of SPEC with the ring setting of each non-reflector slot
+     *  given by RINGS, or all 0 if RINGS is empty. */
+    KeySpace(MachineSpec spec, String rings) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _numRotors = spec.numRotors();
+        _firstMoving = _numRotors - spec.numPawls();
+        if (rings.length() != 0 && rings.length() != _numRotors - 1) {
+            throw EnigmaException.error("Ring setting is not correct Len");
+        }
+        _ringText = rings;
+        _rings = new int[_numRotors];
+        for (int x = 1; x < _numRotors && rings.length() > 0; x += 1) {
+            _rings[x] = _alphabet.toInt(rings.charAt(x - 1));
+        }
+        _library = spec.rotors().values().toArray(new RotorSpec[0]);
+        _arrangements = new ArrayList<int[]>();
+        arrange(new int[_numRotors], 0, new boolean[_library.length]);
+        long positions = 1;
+        for (int x = 1; x < _numRotors; x += 1) {
+            positions = Math.multiplyExact(positions, _size);
+        }
+        _positions = positions;
+        _total = Math.multiplyExact(positions, _arrangements.size());
+    }
+
+    /** Add to _arrangements every way of filling slots SLOT onwards of
+     *  ROTORS with library rotors not marked in USED. */
+    private void arrange(int[] rotors, int slot, boolean[] used) {
+        if (slot == _numRotors) {
+            _arrangements.add(rotors.clone());
+            return;
+        }
+        for (int r = 0; r < _library.length; r += 1) {
+            RotorSpec rotor = _library[r];
+            boolean fits = slot == 0 ? rotor.reflecting()
+                : slot < _firstMoving
+                ? !rotor.reflecting() && !rotor.rotates()
+                : rotor.rotates();
+            if (fits && !used[r]) {
+                used[r] = true;
+                rotors[slot] = r;
+                arrange(rotors, slot + 1, used);
+                used[r] = false;
+            }
+        }
+    }
+
+    /** Return the spec. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the number of keys. */
+    long size() {
+        return _total;
+    }
+
+    /** Return the number of start positions per arrangement. */
+    long positions() {
+        return _positions;
+    }
+
+    /** Return the rotor library, in spec order.  Callers must not
+     *  modify it. */
+    RotorSpec[] library() {
+        return _library;
+    }
+
+    /** Return the ring setting of each slot.  Callers must not modify
+     *  it. */
+    int[] rings() {
+        return _rings;
+    }
+
+    /** Return the library index of the rotor in each slot for key
+     *  INDEX.  Callers must not modify it. */
+    int[] arrangement(long index) {
+        return _arrangements.get((int) (index / _positions));
+    }
+
+    /** Fill POSITIONS with the start position of each slot for key
+     *  INDEX (0 for the reflector). */
+    void positions(long index, int[] positions) {
+        long p = index % _positions;
+        for (int x = _numRotors - 1; x >= 1; x -= 1) {
+            positions[x] = (int) (p % _size);
+            p /= _size;
+        }
+        positions[0] = 0;
+    }
+
+    /** Return the setting line for key INDEX with plugboard PLUGBOARD
+     *  (cycle notation, possibly empty). */
+    String setting(long index, String plugboard) {
+        int[] rotors = arrangement(index);
+        int[] positions = new int[_numRotors];
+        positions(index, positions);
+        StringBuilder line = new StringBuilder("*");
+        for (int r : rotors) {
+            line.append(' ').append(_library[r].name());
+        }
+        line.append(' ');
+        for (int x = 1; x < _numRotors; x += 1) {
+            line.append(_alphabet.toChar(positions[x]));
+        }
+        if (_ringText.length() > 0) {
+            line.append(' ').append(_ringText);
+        }
+        if (plugboard.trim().length() > 0) {
+            line.append(' ').append(plugboard.trim());
+        }
+        return line.toString();
+    }
+
+    /** Spec whose keys these are. */
+    private final MachineSpec _spec;
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of slots. */
+    private final int _numRotors;
+    /** First moving slot. */
+    private final int _firstMoving;
+    /** Ring settings as given. */
+    private final String _ringText;
+    /** Ring setting by slot. */
+    private final int[] _rings;
+    /** Rotor library in spec order. */
+    private final RotorSpec[] _library;
+    /** Every legal choice of library rotor for each slot. */
+    private final ArrayList<int[]> _arrangements;
+    /** Number of start positions per arrangement. */
+    private final long _positions;
+    /** Number of keys. */
+    private final long _total;
+}
@@ -0,0 +1,164 @@
+package enigma;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/** Drives an EnigmaServer with pipelined CONVERT requests and reports
+ *  latency and throughput.  Each of a number of connections opens one
+ *  session and sends it a fixed number of requests, keeping up to a
+ *  given number in flight.  Latency is measured per request, from just
+ *  before it is sent to the arrival of its reply.
+ *  @author Andrew Tom
+ */
+final class LoadGenerator {
+
+    /** The outcome of a run. */
+    static final class Report {
+
+        /** A report of the request latencies LATENCIES (nanoseconds,
+         *  sorted) of requests of CHARS characters each, over ELAPSED
+         *  nanoseconds. */
+        Report(long[] latencies, int chars, long elapsed) {
+            _latencies = latencies;
+            _chars = chars;
+            _elapsed = elapsed;
+        }
+
+        /** Return the number of requests. */
+        int requests() {
+            return _latencies.length;
+        }
+
+        /** Return the latency, in nanoseconds, below which fraction Q of
+         *  requests fall, or 0 if there were no requests. */
+        long percentile(double q) {
+            if (_latencies.length == 0) {
+                return 0;
+            }
+            int i = (int) Math.ceil(q * _latencies.length) - 1;
+            return _latencies[Math.max(0, Math.min(i,
+                                                   _latencies.length - 1))];
+        }
+
+        /** Return requests completed per second. */
+        double throughput() {
+            return _elapsed == 0 ? 0 : _latencies.length * 1e9 / _elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests in %.3f s: %.0f req/s, "
+                                 + "%.0f chars/s, p50 %.1f us, p99 %.1f us",
+                                 requests(), _elapsed / 1e9, throughput(),
+                                 throughput() * _chars,
+                                 percentile(0.5) / 1e3,
+                                 percentile(0.99) / 1e3);
+        }
+
+        /** Sorted latencies. */
+        private final long[] _latencies;
+        /** Characters per request. */
+        private final int _chars;
+        /** Length of the run. */
+        private final long _elapsed;
+    }
+
+    /** A generator sending MESSAGE, as chunks for a machine of config
+     *  CONFIG set up by SETTING, to the server at ADDRESS. */
+    LoadGenerator(SocketAddress address, String config, String setting,
+                  String message) {
+        _address = address;
+        _config = config;
+        _setting = setting;
+        _message = message;
+    }
+
+    /** Send REQUESTS requests on each of CONNECTIONS connections,
+     *  keeping up to DEPTH (positive) in flight on each, and return the
+     *  report. */
+    Report run(int connections, int requests, int depth) {
+        if (connections < 0 || requests < 0 || depth <= 0) {
+            throw EnigmaException.error("bad load counts: %d %d %d",
+                                        connections, requests, depth);
+        }
+        long[] latencies = new long[connections * requests];
+        Thread[] threads = new Thread[connections];
+        EnigmaException[] failure = new EnigmaException[1];
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c += 1) {
+            int first = c * requests;
+            threads[c] = new Thread(() -> {
+                try {
+                    drive(requests, depth, latencies, first);
+                } catch (EnigmaException excp) {
+                    synchronized (failure) {
+                        failure[0] = excp;
+                    }
+                } catch (RuntimeException excp) {
+                    synchronized (failure) {
+                        failure[0] = EnigmaException.error("%s", excp);
+                    }
+                }
+            }, "enigma-load");
+            threads[c].start();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw EnigmaException.error("interrupted");
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        Arrays.sort(latencies);
+        return new Report(latencies, _message.length(), elapsed);
+    }
+
+    /** Send REQUESTS requests over a new connection, up to DEPTH at a
+     *  time, storing their latencies in LATENCIES from FIRST on. */
+    private void drive(int requests, int depth, long[] latencies,
+                       int first) {
+        try (EnigmaClient client = new EnigmaClient(_address)) {
+            int session = client.open(_config, _setting);
+            Semaphore window = new Semaphore(depth);
+            CompletableFuture<?>[] replies = new CompletableFuture<?>[requests];
+            for (int r = 0; r < requests; r += 1) {
+                window.acquireUninterruptibly();
+                long sent = System.nanoTime();
+                int slot = first + r;
+                replies[r] = client.convertAsync(session, _message)
+                    .whenComplete((text, excp) -> {
+                        latencies[slot] = System.nanoTime() - sent;
+                        window.release();
+                    });
+            }
+            try {
+                CompletableFuture.allOf(replies).join();
+            } catch (CompletionException excp) {
+                if (excp.getCause() instanceof EnigmaException) {
+                    throw (EnigmaException) excp.getCause();
+                }
+                throw EnigmaException.error("%s", excp.getCause());
+            }
+            client.close(session);
+        }
+    }
+
+    /** Server address. */
+    private final SocketAddress _address;
+    /** Config id. */
+    private final String _config;
+    /** Setting line. */
+    private final String _setting;
+    /** Text of each request. */
+    private final String _message;
+}
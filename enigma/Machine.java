@@ -1,6 +1,10 @@
 package enigma;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /** Class that represents a complete enigma machine.
@@ -14,8 +18,14 @@ class Machine {
     private int _numPawls;
     /** the rotorlist var. */
     private ArrayList<Rotor> _rotorList = new ArrayList<Rotor>();
-    /** the atnotch array var. */
-    private boolean[] _atNotchArr = new boolean[1];
+
+    /** Messages shorter than twice this are never split by
+     *  convertParallel(). */
+    static final int MIN_PARALLEL_CHUNK = 1 << 14;
+
+    /** Largest number of tape entries (steps times alphabet size)
+     *  compileTape() will allocate. */
+    static final int TAPE_LIMIT = 1 << 24;
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
@@ -27,29 +37,61 @@ class Machine {
         _numRotors = numRotors;
     }
 
-    /** Updates the _notchArr. */
-    public void notchArrUpdater() {
-        Rotor cur;
-        _atNotchArr = new boolean[numRotors()];
-        for (int x = 0; x < numRotors(); x += 1) {
-            cur = _rotorList.get(x);
-            if (!cur.reflecting() && cur.rotates()) {
-                MovingRotor M = (MovingRotor) cur;
-                _atNotchArr[x] = M.atNotch();
-
-                ArrayList<Object> dimb = new ArrayList<>();
-                dimb.add(_alphabet.toChar(M.setting()));
-                dimb.add(M.atNotch());
+    /** Work out, for the rotors now in my slots, which slots hold
+     *  moving rotors and which have pawls, so that step() need not ask
+     *  the rotors. */
+    private void buildStepper() {
+        int n = _rotorList.size();
+        MovingRotor[] movers = new MovingRotor[n];
+        for (int x = 0; x < n; x += 1) {
+            Rotor cur = _rotorList.get(x);
+            if (cur.rotates() && !cur.reflecting()) {
+                movers[x] = (MovingRotor) cur;
             }
         }
+        _pawl = new boolean[n];
+        _doubleStep = new boolean[n];
+        for (int x = 0; x < n - 1; x += 1) {
+            _pawl[x] = movers[x] != null && movers[x + 1] != null;
+            _doubleStep[x] = _pawl[x] && x > 0 && movers[x - 1] != null;
+        }
+        _movers = movers;
     }
 
 
+    /** Return a machine in the same state as me that can be stepped
+     *  independently: the rotors are copied, while the alphabet,
+     *  plugboard, wiring tables and any tape are shared. */
+    Machine copy() {
+        Machine result = new Machine(_alphabet, _numRotors, _numPawls);
+        for (Rotor r : _rotorList) {
+            result._rotorList.add(r.copy());
+        }
+        result._plugBoard = _plugBoard;
+        result._startSettings = _startSettings;
+        result._position = _position;
+        result._cycleStart = _cycleStart;
+        result._cycleLength = _cycleLength;
+        result._tape = _tape;
+        result._tapeMoves = _tapeMoves;
+        result._tapeSteps = _tapeSteps;
+        result._tapePrefix = _tapePrefix;
+        result._tapeRow = _tapeRow;
+        result._tapeAdvances = _tapeAdvances;
+        result._tapeBase = _tapeBase;
+        return result;
+    }
+
     /** Return the number of rotor slots I have. */
     int numRotors() {
         return _numRotors;
     }
 
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
     /** Return the number pawls (and thus rotating rotors) I have. */
     int numPawls() {
         return _numPawls;
@@ -67,21 +109,23 @@ class Machine {
      * @param in the incoming rotorlist
      */
     public void rotorListSetter(ArrayList<Rotor> in) {
+        _tape = null;
+        _movers = null;
+        _startSettings = null;
+        _cycleLength = 0;
+        _position = 0;
         _rotorList = in;
     }
 
-    /** boolean arr of rotors at their notches.
-     *
-     * @return the notch array
-     */
-    public boolean[] atNotchArr() {
-        return _atNotchArr;
-    }
-
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(ArrayList<Rotor> rotors) {
+        _tape = null;
+        _movers = null;
+        _startSettings = null;
+        _cycleLength = 0;
+        _position = 0;
         for (int x = 0; x < rotors.size(); x += 1) {
             _rotorList.add(rotors.get(x));
         }
@@ -97,6 +141,7 @@ class Machine {
         if (setting.length() != numRotors() - 1) {
             throw EnigmaException.error("Setting is not correct Len");
         }
+        _tape = null;
 
         Rotor cur;
         int settingPos = 0;
@@ -107,12 +152,197 @@ class Machine {
                 settingPos += 1;
             }
         }
+        buildStepper();
+        _startSettings = settings();
+        _cycleLength = 0;
+        _position = 0;
+    }
+
+    /** Return the current setting of each of my slots. */
+    private int[] settings() {
+        int[] result = new int[numRotors()];
+        for (int x = 0; x < numRotors(); x += 1) {
+            result[x] = _rotorList.get(x).setting();
+        }
+        return result;
+    }
+
+    /** Put each non-reflector slot back to SETTINGS. */
+    private void restoreSettings(int[] settings) {
+        for (int x = 0; x < numRotors(); x += 1) {
+            Rotor cur = _rotorList.get(x);
+            if (!cur.reflecting()) {
+                cur.set(settings[x]);
+            }
+        }
+    }
+
+    /** Return the number of characters converted (advances made) since
+     *  the rotors were last set. */
+    long position() {
+        if (_tape != null) {
+            return _tapeBase + _tapeAdvances;
+        }
+        return _position;
+    }
+
+    /** Move the machine to the state it has after POSITION advances
+     *  from the last setRotors(), as if that many characters had been
+     *  converted.  Rather than replaying each step, only the steps at
+     *  which a rotor other than the fast one moves are simulated (see
+     *  skip()).  The first seek also finds the cycle of rotor states
+     *  reached from the setting, and every seek reduces POSITION into
+     *  it, so a seek costs at most one pass around that cycle, however
+     *  large POSITION is; nothing is allocated after the first. */
+    void seek(long position) {
+        if (position < 0) {
+            throw EnigmaException.error("Negative position");
+        }
+        if (_tape != null) {
+            if (position >= _tapeBase) {
+                _tapeAdvances = position - _tapeBase;
+                _tapeRow = tapeRow(_tapeAdvances);
+                return;
+            }
+            _tape = null;
+        }
+        if (_startSettings == null) {
+            if (position < _position) {
+                throw EnigmaException.error("Rotors have not been set");
+            }
+            fastForward(position - _position);
+            _position = position;
+            return;
+        }
+        long current = reduce(_position);
+        if (_cycleLength == 0) {
+            findCycle();
+            current = 0;
+        }
+        long target = reduce(position);
+        if (target < current) {
+            restoreSettings(_startSettings);
+            current = 0;
+        }
+        fastForward(target - current);
+        _position = position;
+    }
+
+    /** Return the smallest number of advances from the last setRotors()
+     *  that leaves the rotors as POSITION advances do, once the cycle
+     *  is known; otherwise POSITION. */
+    private long reduce(long position) {
+        if (_cycleLength == 0 || position < _cycleStart) {
+            return position;
+        }
+        return _cycleStart + (position - _cycleStart) % _cycleLength;
+    }
+
+    /** Set _cycleStart and _cycleLength from the rotor states reached
+     *  from _startSettings, with Brent's cycle-finding algorithm over
+     *  the runs taken by skip(), and leave the rotors at
+     *  _startSettings. */
+    private void findCycle() {
+        int n = numRotors();
+        int[] tortoise = _startSettings.clone();
+        int[] hare = new int[n];
+        restoreSettings(_startSettings);
+        long length = skip(Long.MAX_VALUE);
+        readSettings(hare);
+        int power = 1, runs = 1;
+        while (!Arrays.equals(tortoise, hare)) {
+            if (power == runs) {
+                System.arraycopy(hare, 0, tortoise, 0, n);
+                power *= 2;
+                runs = 0;
+                length = 0;
+            }
+            length += skip(Long.MAX_VALUE);
+            readSettings(hare);
+            runs += 1;
+        }
+        restoreSettings(_startSettings);
+        for (int r = 0; r < runs; r += 1) {
+            skip(Long.MAX_VALUE);
+        }
+        readSettings(hare);
+        System.arraycopy(_startSettings, 0, tortoise, 0, n);
+        long start = 0;
+        while (!Arrays.equals(tortoise, hare)) {
+            restoreSettings(tortoise);
+            start += skip(Long.MAX_VALUE);
+            readSettings(tortoise);
+            restoreSettings(hare);
+            skip(Long.MAX_VALUE);
+            readSettings(hare);
+        }
+        restoreSettings(_startSettings);
+        _cycleStart = start;
+        _cycleLength = length;
+    }
+
+    /** Store the current setting of each of my slots in INTO. */
+    private void readSettings(int[] into) {
+        for (int x = 0; x < numRotors(); x += 1) {
+            into[x] = _rotorList.get(x).setting();
+        }
+    }
+
+    /** Advance the rotors STEPS times, skipping over runs in which only
+     *  the fast rotor moves. */
+    private void fastForward(long steps) {
+        long remaining = steps;
+        while (remaining > 0) {
+            remaining -= skip(remaining);
+        }
+    }
+
+    /** Advance the rotors through one run of steps that ends with the
+     *  next step in which a rotor other than the fast one may move, or
+     *  through a whole turn of the fast rotor, which leaves the rotors
+     *  as they were, if there is no such step; but by at most LIMIT
+     *  steps.  Return the number of steps taken. */
+    private long skip(long limit) {
+        if (middleAtNotch()) {
+            step();
+            return 1;
+        }
+        int size = _alphabet.size();
+        MovingRotor fast = (MovingRotor) _rotorList.get(numRotors() - 1);
+        int d = fast.notchDistance(fast.setting());
+        long run = d < 0 ? size : d + 1;
+        if (run > limit) {
+            fast.set((int) ((fast.setting() + limit) % size));
+            return limit;
+        }
+        if (d >= 0) {
+            fast.set((fast.setting() + d) % size);
+            step();
+        }
+        return run;
+    }
+
+    /** Return true iff some moving rotor other than the fast one and
+     *  the leftmost moving one is at a notch, so that it will move on
+     *  the next step. */
+    private boolean middleAtNotch() {
+        if (_movers == null) {
+            buildStepper();
+        }
+        for (int x = 1; x < _movers.length - 1; x += 1) {
+            if (_movers[x] != null && _movers[x - 1] != null
+                && _movers[x].atNotch()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /** The extra credit ring setter method.
      * @param setting the setting for the ring
      * */
     public void setRingSetting(String setting) {
+        dropTape();
         Rotor cur;
         int settingPos = 0;
         for (int x = 0; x < numRotors(); x += 1) {
@@ -130,38 +360,186 @@ class Machine {
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        dropTape();
         _plugBoard = plugboard;
     }
 
+    /** Switch to compiled mode: walk the rotor states reachable from
+     *  the current setting once, recording the whole machine's
+     *  permutation at each step, until a state repeats.  Later calls
+     *  to convert(int) are then a single table lookup.  Changing the
+     *  rotors, rings or plugboard leaves compiled mode.
+     *
+     *  @return false (and stay uncompiled) if the cycle of states is
+     *  too long to record in TAPE_LIMIT entries.
+     *  */
+    boolean compileTape() {
+        dropTape();
+        long position = _position;
+        int size = _alphabet.size();
+        if (size == 0) {
+            return false;
+        }
+        int[] start = settings();
+
+        HashMap<Long, Integer> seen = new HashMap<Long, Integer>();
+        short[] tape = new short[size * 64];
+        long[] moves = Metrics.ENABLED ? new long[64] : null;
+        int steps = 0;
+        int prefix = -1;
+        while (true) {
+            long moved = step();
+            long key = stateKey();
+            if (key < 0 || (long) (steps + 1) * size > TAPE_LIMIT) {
+                break;
+            }
+            Integer prev = seen.put(key, steps);
+            if (prev != null) {
+                prefix = prev;
+                break;
+            }
+            if ((steps + 1) * size > tape.length) {
+                tape = Arrays.copyOf(tape,
+                        (int) Math.min(TAPE_LIMIT, 2L * tape.length));
+            }
+            for (int c = 0; c < size; c += 1) {
+                tape[steps * size + c] = (short) route(c);
+            }
+            if (moves != null) {
+                if (steps == moves.length) {
+                    moves = Arrays.copyOf(moves, 2 * steps);
+                }
+                moves[steps] = moved;
+            }
+            steps += 1;
+        }
+
+        restoreSettings(start);
+        _position = position;
+        if (prefix < 0) {
+            return false;
+        }
+        _tape = Arrays.copyOf(tape, steps * size);
+        _tapeMoves = moves;
+        _tapeSteps = steps;
+        _tapePrefix = prefix;
+        _tapeRow = 0;
+        _tapeAdvances = 0;
+        _tapeBase = position;
+        return true;
+    }
+
+    /** Return true iff convert(int) is currently served from a tape. */
+    boolean compiled() {
+        return _tape != null;
+    }
+
+    /** Leave compiled mode, first bringing the rotors to the position
+     *  the tape has reached. */
+    private void dropTape() {
+        if (_tape != null) {
+            _tape = null;
+            fastForward(_tapeAdvances);
+        }
+    }
+
+    /** Return the tape row that follows ADVANCES advances from the
+     *  point where the tape was compiled. */
+    private int tapeRow(long advances) {
+        if (advances < _tapeSteps) {
+            return (int) advances;
+        }
+        return _tapePrefix
+            + (int) ((advances - _tapePrefix) % (_tapeSteps - _tapePrefix));
+    }
+
+    /** Pack the settings of my moving rotors into a long.
+     * @return the packed state, or -1 if it does not fit
+     * */
+    private long stateKey() {
+        long key = 0;
+        long limit = Long.MAX_VALUE / _alphabet.size();
+        for (int x = 0; x < numRotors(); x += 1) {
+            Rotor cur = _rotorList.get(x);
+            if (cur.rotates()) {
+                if (key > limit) {
+                    return -1;
+                }
+                key = key * _alphabet.size() + cur.setting();
+            }
+        }
+        return key;
+    }
+
     /** Advances the machine once. */
     public void advanceMachine() {
-        Rotor cur;
-        if (atNotchArr().length == 1) {
-            notchArrUpdater();
+        if (_tape != null) {
+            if (Metrics.ENABLED) {
+                reportMoves(_tapeMoves[_tapeRow]);
+            }
+            _tapeRow += 1;
+            if (_tapeRow == _tapeSteps) {
+                _tapeRow = _tapePrefix;
+            }
+            _tapeAdvances += 1;
+            return;
+        }
+        long moved = step();
+        _position += 1;
+        if (Metrics.ENABLED) {
+            reportMoves(moved);
         }
+    }
 
-        for (int x = numRotors() - 1; x >= 0; x -= 1) {
-            cur = _rotorList.get(x);
-            if (x == numRotors() - 1) {
-                MovingRotor fast = (MovingRotor) cur;
-                fast.advance();
-            } else if (cur.rotates() && !cur.reflecting()) {
-                Rotor left = _rotorList.get(x - 1);
-                Rotor right = _rotorList.get(x + 1);
-                if (left.rotates() && right.rotates() && cur.atNotch()) {
-                    cur.advance();
-                } else if (left.rotates() && right.rotates()
-                        &&
-                        _atNotchArr[x + 1]) {
-                    cur.advance();
-                } else if (!left.rotates() && right.rotates()
-                        &&
-                        _atNotchArr[x + 1]) {
-                    cur.advance();
-                }
+    /** Tell the metrics listener about a step in which the slots in
+     *  MOVED (a bit per slot) advanced. */
+    private void reportMoves(long moved) {
+        MetricsListener listener = Metrics.listener();
+        int fast = numRotors() - 1;
+        while (moved != 0) {
+            int slot = Long.numberOfTrailingZeros(moved);
+            listener.rotorAdvanced(slot, slot != fast);
+            moved &= moved - 1;
+        }
+    }
+
+    /** Move the rotors one step, including the double step: the fast
+     *  rotor always moves, and a rotor with a pawl moves if its right
+     *  neighbour was at a notch, or if it is at a notch itself and its
+     *  left neighbour can move (so the pawl to its left engages it).
+     *  Every test uses the notches as they were before the step.
+     *  Nothing is allocated.
+     *  @return a mask with bit x set if slot x moved (slots past 63 are
+     *  left out)
+     *  */
+    private long step() {
+        if (_movers == null) {
+            buildStepper();
+        }
+        MovingRotor[] movers = _movers;
+        int last = movers.length - 1;
+        long moved = 0;
+        boolean rightNotch = false;
+        for (int x = last; x >= 0; x -= 1) {
+            MovingRotor cur = movers[x];
+            if (cur == null) {
+                rightNotch = false;
+                continue;
             }
+            boolean here = cur.atNotch();
+            if (x == last
+                || (_pawl[x] && (rightNotch || (_doubleStep[x] && here)))) {
+                cur.advance();
+                moved |= slotBit(x);
+            }
+            rightNotch = here;
         }
-        notchArrUpdater();
+        return moved;
+    }
+
+    /** Return the bit standing for slot X in a step() mask. */
+    private static long slotBit(int x) {
+        return x < Long.SIZE ? 1L << x : 0;
     }
 
     /** Returns the result of converting the input character C (as an
@@ -172,14 +550,21 @@ class Machine {
      *  I am changing c throughout the method
      *  */
     int convert(int c) {
+        if (_tape != null) {
+            int size = _alphabet.size();
+            int result = _tape[_tapeRow * size + c] & 0xFFFF;
+            advanceMachine();
+            return result;
+        }
         advanceMachine();
+        return route(c);
+    }
 
+    /** Return the result of sending C through the plugboard, the rotors
+     *  and back, at the current rotor positions. */
+    private int route(int c) {
         Rotor r;
-        char cChar = _alphabet.toChar(c);
-        if (_plugBoard.permForward().containsKey(cChar)) {
-            cChar = (char) _plugBoard.permForward().get(cChar);
-            c = _alphabet.toInt(cChar);
-        }
+        c = _plugBoard.permute(c);
 
         for (int x = numRotors() - 1; x >= 0; x -= 1) {
             r = _rotorList.get(x);
@@ -192,13 +577,7 @@ class Machine {
             }
         }
 
-        cChar = _alphabet.toChar(c);
-        if (_plugBoard.permForward().containsKey(cChar)) {
-            cChar = (char) _plugBoard.permForward().get(cChar);
-            c = _alphabet.toInt(cChar);
-        }
-
-        return c;
+        return _plugBoard.permute(c);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
@@ -208,23 +587,116 @@ class Machine {
      *  msg
      *  */
     String convert(String msg) {
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Convert the LEN characters IN[OFF..] into OUT[OUTOFF..], advancing
+     *  the machine once per character.  IN and OUT may be the same
+     *  array, including with OFF == OUTOFF. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        convertRun(in, off, len, out, outOff, false);
+    }
+
+    /** As for convert(IN, OFF, LEN, OUT, OUTOFF), except that when
+     *  COPYOTHERS, characters outside my alphabet are copied unchanged
+     *  without advancing the machine instead of being an error. */
+    void convertRun(char[] in, int off, int len, char[] out, int outOff,
+                    boolean copyOthers) {
+        int converted = 0;
+        for (int x = 0; x < len; x += 1) {
+            char cur = in[off + x];
+            int charInt = _alphabet.indexOf(cur);
+            if (charInt >= 0) {
+                out[outOff + x] = _alphabet.toChar(convert(charInt));
+                converted += 1;
+            } else if (copyOthers) {
+                out[outOff + x] = cur;
+            } else {
+                throw EnigmaException.error("character %c not in alphabet",
+                                            cur);
+            }
+        }
+        if (Metrics.ENABLED) {
+            Metrics.listener().charactersConverted(converted);
+        }
+    }
+
+    /** Returns the same result as convert(MSG.toString()), but for long
+     *  messages splits MSG into chunks that are converted on copies of
+     *  me, each sought to the chunk's starting position, in the common
+     *  ForkJoinPool.  Afterwards I am positioned after the last
+     *  character of MSG.  Nothing is converted if MSG contains a
+     *  character outside my alphabet. */
+    String convertParallel(CharSequence msg) {
+        int n = msg.length();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (n < 2 * MIN_PARALLEL_CHUNK || parallelism < 2) {
+            return convert(msg.toString());
+        }
+        for (int x = 0; x < n; x += 1) {
+            if (!_alphabet.contains(msg.charAt(x))) {
+                throw EnigmaException.error(
+                    "character %c not in alphabet", msg.charAt(x));
+            }
+        }
+        int chunk = Math.max(MIN_PARALLEL_CHUNK, n / (parallelism * 8));
+        char[] out = new char[n];
+        long base = position();
+        ForkJoinPool.commonPool().invoke(
+            new ConvertTask(msg, out, 0, n, chunk, base));
+        seek(base + n);
+        if (Metrics.ENABLED) {
+            Metrics.listener().charactersConverted(n);
+        }
+        return new String(out);
+    }
 
-        String convertedString = "";
-        char cur;
-        int charInt;
-        char append;
+    /** Converts one slice of a message for convertParallel(). */
+    private class ConvertTask extends RecursiveAction {
+
+        /** Convert MSG[LO..HI) into OUT, splitting into pieces of at
+         *  most CHUNK characters.  BASE is the machine position of
+         *  MSG[0]. */
+        ConvertTask(CharSequence msg, char[] out, int lo, int hi,
+                    int chunk, long base) {
+            _msg = msg;
+            _out = out;
+            _lo = lo;
+            _hi = hi;
+            _chunk = chunk;
+            _base = base;
+        }
 
-        for (int x = 0; x < msg.length(); x += 1) {
-            cur = msg.charAt(x);
-            if (!_alphabet.contains(cur)) {
-                throw EnigmaException.error("winkwonk");
+        @Override
+        protected void compute() {
+            if (_hi - _lo > _chunk) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new ConvertTask(_msg, _out, _lo, mid, _chunk, _base),
+                          new ConvertTask(_msg, _out, mid, _hi, _chunk, _base));
+                return;
+            }
+            Machine m = copy();
+            m.seek(_base + _lo);
+            for (int x = _lo; x < _hi; x += 1) {
+                int c = _alphabet.toInt(_msg.charAt(x));
+                _out[x] = _alphabet.toChar(m.convert(c));
             }
-            charInt = _alphabet.toInt(cur);
-            append = _alphabet.toChar(convert(charInt));
-            convertedString += append;
         }
 
-        return convertedString;
+        /** Whole message. */
+        private final CharSequence _msg;
+        /** Output for the whole message. */
+        private final char[] _out;
+        /** First index of my slice. */
+        private final int _lo;
+        /** Index just past my slice. */
+        private final int _hi;
+        /** Largest slice converted without splitting. */
+        private final int _chunk;
+        /** Machine position of _msg[0]. */
+        private final long _base;
     }
 
     /** Common alphabet of my rotors. */
@@ -233,6 +705,55 @@ class Machine {
     /** plugbord perm. */
     private Permutation _plugBoard;
 
+    /** Compiled keystream: row i is the machine permutation after the
+     *  (i+1)th advance.  Null when not compiled. */
+    private short[] _tape;
+
+    /** Slots moved by the advance to each row of _tape, as returned by
+     *  step(); only kept when metrics are enabled. */
+    private long[] _tapeMoves;
+
+    /** Number of rows in _tape. */
+    private int _tapeSteps;
+
+    /** Row the tape loops back to after its last row. */
+    private int _tapePrefix;
+
+    /** Row used by the next convert(int). */
+    private int _tapeRow;
+
+    /** Advances taken from the tape that the rotors have not made. */
+    private long _tapeAdvances;
+
+    /** Value of position() when the tape was compiled. */
+    private long _tapeBase;
+
+    /** Advances made since the rotors were last set (uncompiled mode). */
+    private long _position;
+
+    /** Moving rotor in each slot, or null for fixed rotors and
+     *  reflectors; null until built by buildStepper(). */
+    private MovingRotor[] _movers;
+
+    /** _pawl[x] is true iff slot x is not the last and it and its right
+     *  neighbour both move, so that slot x is carried. */
+    private boolean[] _pawl;
+
+    /** _doubleStep[x] is true iff _pawl[x] and the rotor to the left of
+     *  slot x moves, so that slot x also moves from its own notch. */
+    private boolean[] _doubleStep;
+
+    /** Slot settings given by the last setRotors(), or null. */
+    private int[] _startSettings;
+
+    /** Advances from _startSettings after which the rotor states
+     *  repeat with period _cycleLength. */
+    private long _cycleStart;
+
+    /** Length of the cycle of rotor states reached from _startSettings,
+     *  in advances, or 0 if not yet found. */
+    private long _cycleLength;
+
     /** plugboard getter.
      * @return plugboard is returned
      * */
@@ -0,0 +1,261 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The immutable, compiled form of a configuration file: an alphabet,
+ *  the number of slots and pawls, and a library of RotorSpecs.  It is
+ *  parsed once and may be shared by any number of threads; setting
+ *  lines are turned into independent Machines or MachineStates without
+ *  copying wiring.
+ *  @author Andrew Tom
+ */
+final class MachineSpec {
+
+    /** A spec for machines over ALPHA with NUMROTORS slots and PAWLS
+     *  pawls, whose rotor library is ROTORS.  Later rotors replace
+     *  earlier ones of the same name. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                Collection<Rotor> rotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = pawls;
+        LinkedHashMap<String, RotorSpec> library =
+            new LinkedHashMap<String, RotorSpec>();
+        for (Rotor r : rotors) {
+            library.put(r.name(), new RotorSpec(r));
+        }
+        _rotors = Collections.unmodifiableMap(library);
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return my rotor library, by name, in configuration order. */
+    Map<String, RotorSpec> rotors() {
+        return _rotors;
+    }
+
+    /** Return the rotor named NAME, or null. */
+    RotorSpec rotor(String name) {
+        return _rotors.get(name);
+    }
+
+    /** Return a new Machine with no rotors inserted yet. */
+    Machine newMachine() {
+        return new Machine(_alphabet, _numRotors, _numPawls);
+    }
+
+    /** Return a new Machine set up according to the setting line
+     *  SETTINGS. */
+    Machine newMachine(String settings) {
+        Machine m = newMachine();
+        parse(settings).applyTo(m);
+        return m;
+    }
+
+    /** Return a new MachineState set up according to the setting line
+     *  SETTINGS. */
+    MachineState newState(String settings) {
+        return parse(settings).newState();
+    }
+
+    /** Return the parsed and checked form of the setting line
+     *  SETTINGS, which has the format
+     *  "* REFLECTOR ROTOR... POSITIONS [RINGS] [(PLUG CYCLES)...]". */
+    Setting parse(String settings) {
+        String[] tokens = settings.split("\\s+");
+        if (!tokens[0].equals("*")) {
+            throw EnigmaException.error("Missing *");
+        }
+        if (tokens.length < _numRotors + 2) {
+            throw EnigmaException.error("Setting is missing rotors");
+        }
+        RotorSpec[] slots = new RotorSpec[_numRotors];
+        HashSet<String> rotorDupe = new HashSet<String>();
+        for (int x = 0; x < _numRotors; x += 1) {
+            slots[x] = _rotors.get(tokens[x + 1]);
+            if (slots[x] == null) {
+                throw EnigmaException.error("Rotor name incorrect");
+            }
+            rotorDupe.add(tokens[x + 1]);
+        }
+        if (rotorDupe.size() < slots.length) {
+            throw EnigmaException.error("Duplicate rotors in setting!");
+        }
+        checkOrder(slots);
+
+        int next = _numRotors + 1;
+        String positions = tokens[next];
+        next += 1;
+        if (positions.length() != _numRotors - 1) {
+            throw EnigmaException.error("Setting is not correct Len");
+        }
+        String rings = "";
+        if (next < tokens.length && !tokens[next].startsWith("(")) {
+            rings = tokens[next];
+            next += 1;
+        }
+
+        StringBuilder plugs = new StringBuilder();
+        boolean inParen = false;
+        for (; next < tokens.length; next += 1) {
+            String cur = tokens[next];
+            for (int x = 0; x < cur.length(); x += 1) {
+                char c = cur.charAt(x);
+                if (c == '(') {
+                    inParen = true;
+                    plugs.append(c);
+                } else if (c == ')') {
+                    inParen = false;
+                    plugs.append(c);
+                } else if (inParen) {
+                    plugs.append(c);
+                }
+            }
+        }
+        Permutation plugboard =
+            new Permutation(plugs.toString().trim(), _alphabet);
+        return new Setting(slots, positions, rings, plugboard);
+    }
+
+    /** Check that SLOTS hold a reflector followed by fixed rotors and
+     *  then exactly numPawls() moving rotors. */
+    private void checkOrder(RotorSpec[] slots) {
+        int firstMoving = 0;
+        boolean first = true;
+        int numMoving = 0;
+        for (int x = 0; x < slots.length; x += 1) {
+            RotorSpec cur = slots[x];
+            if (cur.rotates() && first) {
+                firstMoving = x;
+                first = false;
+            }
+            if (!cur.rotates() && x > firstMoving && !first) {
+                throw EnigmaException.error("Fixed in bad spot");
+            }
+            if (x == 0 && !cur.reflecting()) {
+                throw EnigmaException.error("First rotor must be reflector!");
+            } else if (x > 0 && cur.reflecting()) {
+                throw EnigmaException.error("Reflector can't be past 0th pos!");
+            }
+            if (cur.rotates()) {
+                numMoving += 1;
+            }
+        }
+        if (numMoving != _numPawls) {
+            throw EnigmaException.error("num pawls boo");
+        }
+    }
+
+    /** A parsed setting line: the rotors chosen for each slot, their
+     *  positions and ring settings, and the plugboard. */
+    final class Setting {
+
+        /** A setting with rotors SLOTS at POSITIONS (one character per
+         *  non-reflector slot), ring settings RINGS (possibly shorter)
+         *  and plugboard PLUGBOARD. */
+        private Setting(RotorSpec[] slots, String positions, String rings,
+                        Permutation plugboard) {
+            _slots = slots;
+            _plugboard = plugboard;
+            _positions = new int[slots.length];
+            _rings = new int[slots.length];
+            int posn = 0;
+            for (int x = 0; x < slots.length; x += 1) {
+                if (!slots[x].reflecting()) {
+                    _positions[x] = _alphabet.toInt(positions.charAt(posn));
+                    if (posn < rings.length()) {
+                        _rings[x] = _alphabet.toInt(rings.charAt(posn));
+                    }
+                    posn += 1;
+                }
+            }
+        }
+
+        /** Put fresh rotors into M and set them up as I describe. */
+        void applyTo(Machine m) {
+            ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+            for (RotorSpec r : _slots) {
+                rotors.add(r.newRotor());
+            }
+            m.rotorListSetter(new ArrayList<Rotor>());
+            m.insertRotors(rotors);
+            StringBuilder positions = new StringBuilder();
+            StringBuilder rings = new StringBuilder();
+            for (int x = 0; x < _slots.length; x += 1) {
+                if (!_slots[x].reflecting()) {
+                    positions.append(_alphabet.toChar(_positions[x]));
+                    rings.append(_alphabet.toChar(_rings[x]));
+                }
+            }
+            m.setRotors(positions.toString());
+            m.setRingSetting(rings.toString());
+            m.setPlugboard(_plugboard);
+        }
+
+        /** Return a new MachineState in the state I describe. */
+        MachineState newState() {
+            return new MachineState(MachineSpec.this, _slots.clone(),
+                                    _positions.clone(), _rings.clone(),
+                                    _plugboard);
+        }
+
+        /** Return the rotor in slot X. */
+        RotorSpec slot(int x) {
+            return _slots[x];
+        }
+
+        /** Return the starting position of slot X. */
+        int position(int x) {
+            return _positions[x];
+        }
+
+        /** Return the ring setting of slot X. */
+        int ring(int x) {
+            return _rings[x];
+        }
+
+        /** Return the plugboard. */
+        Permutation plugboard() {
+            return _plugboard;
+        }
+
+        /** Rotors by slot. */
+        private final RotorSpec[] _slots;
+        /** Starting positions by slot. */
+        private final int[] _positions;
+        /** Ring settings by slot. */
+        private final int[] _rings;
+        /** Plugboard. */
+        private final Permutation _plugboard;
+    }
+
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** Rotor library by name. */
+    private final Map<String, RotorSpec> _rotors;
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for MachineSpec and MachineState.
+ *  @author Andrew Tom
+ */
+public class MachineSpecTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return a spec for the naval machine (5 slots, 3 pawls) holding
+     *  every rotor of NAVALA. */
+    static MachineSpec navalSpec() {
+        String[][] moving = {
+            {"I", "Q"}, {"II", "E"}, {"III", "V"}, {"IV", "J"}, {"V", "Z"},
+            {"VI", "ZM"}, {"VII", "ZM"}, {"VIII", "ZM"},
+        };
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        for (String[] r : moving) {
+            rotors.add(new MovingRotor(r[0],
+                new Permutation(NAVALA.get(r[0]), UPPER), r[1]));
+        }
+        for (String name : new String[] {"Beta", "Gamma"}) {
+            rotors.add(new FixedRotor(name,
+                new Permutation(NAVALA.get(name), UPPER)));
+        }
+        for (String name : new String[] {"B", "C"}) {
+            rotors.add(new Reflector(name,
+                new Permutation(NAVALA.get(name), UPPER)));
+        }
+        return new MachineSpec(UPPER, 5, 3, rotors);
+    }
+
+    /** Setting lines exercising notches, double steps and rings. */
+    static final String[] SETTINGS = {
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+        "* C Gamma VI VII VIII ZZZZ",
+        "* B Beta I II III AADU",
+        "* C Beta IV V I MMZZ BCDE (AB)",
+        "* B Gamma VIII VI II AAML CQ",
+    };
+
+    @Test
+    public void stateMatchesMachine() {
+        MachineSpec spec = navalSpec();
+        String msg = MachineTest.longMessage();
+        for (String setting : SETTINGS) {
+            Machine m = spec.newMachine(setting);
+            MachineState s = spec.newState(setting);
+            assertEquals(setting, m.convert(msg), s.convert(msg));
+        }
+    }
+
+    @Test
+    public void advanceManyMatchesSteps() {
+        MachineSpec spec = navalSpec();
+        for (String setting : SETTINGS) {
+            for (int steps : new int[] { 0, 1, 25, 26, 27, 700, 5000 }) {
+                MachineState stepped = spec.newState(setting);
+                MachineState jumped = spec.newState(setting);
+                for (int n = 0; n < steps; n += 1) {
+                    stepped.advance();
+                }
+                jumped.advance(steps);
+                for (int x = 0; x < spec.numRotors(); x += 1) {
+                    assertEquals(setting + " after " + steps,
+                                 stepped.position(x), jumped.position(x));
+                }
+                assertEquals(stepped.convert("ENIGMA"),
+                             jumped.convert("ENIGMA"));
+            }
+        }
+    }
+
+    @Test
+    public void machinesDoNotShareRotors() {
+        MachineSpec spec = navalSpec();
+        Machine a = spec.newMachine(SETTINGS[0]);
+        Machine b = spec.newMachine(SETTINGS[0]);
+        assertEquals("QVPQS", a.convert("FROMH"));
+        assertEquals("QVPQS", b.convert("FROMH"));
+        assertNotSame(a.rotorList().get(2), b.rotorList().get(2));
+    }
+
+    @Test
+    public void concurrentStates() throws InterruptedException {
+        MachineSpec spec = navalSpec();
+        String msg = MachineTest.longMessage();
+        String expected = spec.newState(SETTINGS[3]).convert(msg);
+        String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i += 1) {
+            final int k = i;
+            threads[i] = new Thread(() -> {
+                results[k] = spec.newState(SETTINGS[3]).convert(msg);
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (String r : results) {
+            assertEquals(expected, r);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void badPawlCount() {
+        navalSpec().newState("* B Beta Gamma IV I AXLE");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void shortSetting() {
+        navalSpec().parse("* B Beta III");
+    }
+
+}
@@ -0,0 +1,202 @@
+package enigma;
+
+/** The per-session state of a machine built from a shared MachineSpec:
+ *  which rotor is in each slot, and the slot positions and ring
+ *  settings as plain ints.  Conversion reads the compiled tables of
+ *  the RotorSpecs directly, so any number of states may run
+ *  concurrently over one spec without locking or copying wiring.  A
+ *  single MachineState is not itself thread-safe.  Stepping, including
+ *  the double step, follows Machine.advanceMachine().
+ *  @author Andrew Tom
+ */
+final class MachineState {
+
+    /** A state for SPEC with rotors SLOTS at POSITIONS with ring
+     *  settings RINGS and plugboard PLUGBOARD.  The arrays become mine. */
+    MachineState(MachineSpec spec, RotorSpec[] slots, int[] positions,
+                 int[] rings, Permutation plugboard) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _slots = slots;
+        _positions = positions;
+        _rings = rings;
+        _offsets = new int[slots.length];
+        for (int x = 0; x < slots.length; x += 1) {
+            _offsets[x] = Math.floorMod(positions[x] - rings[x], _size);
+        }
+        _plugForward = plugboard.forwardTable();
+    }
+
+    /** Return the spec I was built from. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Move each slot x to position POSITIONS[x], keeping the ring
+     *  settings. */
+    void setPositions(int[] positions) {
+        for (int x = 0; x < _slots.length; x += 1) {
+            _positions[x] = positions[x];
+            _offsets[x] = Math.floorMod(positions[x] - _rings[x], _size);
+        }
+    }
+
+    /** Return the current position of slot X. */
+    int position(int x) {
+        return _positions[x];
+    }
+
+    /** Return the number of characters converted so far. */
+    long converted() {
+        return _converted;
+    }
+
+    /** Advance the rotors one step. */
+    void advance() {
+        int last = _slots.length - 1;
+        boolean rightNotch = false;
+        for (int x = last; x > 0; x -= 1) {
+            RotorSpec cur = _slots[x];
+            boolean here = cur.atNotch(_positions[x]);
+            boolean move;
+            if (x == last) {
+                move = cur.rotates();
+            } else {
+                move = cur.rotates() && _slots[x + 1].rotates()
+                    && (rightNotch || (_slots[x - 1].rotates() && here));
+            }
+            if (move) {
+                if (Metrics.ENABLED) {
+                    Metrics.listener().rotorAdvanced(x, x != last);
+                }
+                _positions[x] = _positions[x] + 1 == _size
+                    ? 0 : _positions[x] + 1;
+                _offsets[x] = _offsets[x] + 1 == _size ? 0 : _offsets[x] + 1;
+            }
+            rightNotch = here;
+        }
+    }
+
+    /** Advance the rotors STEPS times, as that many calls of advance()
+     *  would, but jumping over each run of steps in which only the fast
+     *  rotor moves, so the cost grows with the number of steps that
+     *  move another rotor.  Moves made by a jump are not reported to
+     *  the metrics listener. */
+    void advance(long steps) {
+        int last = _slots.length - 1;
+        RotorSpec fast = _slots[last];
+        long remaining = steps;
+        while (remaining > 0) {
+            if (middleAtNotch()) {
+                advance();
+                remaining -= 1;
+                continue;
+            }
+            int d = fast.notchDistance(_positions[last]);
+            if (d < 0 || d >= remaining) {
+                if (fast.rotates()) {
+                    moveFast((int) (remaining % _size));
+                }
+                return;
+            }
+            moveFast(d);
+            advance();
+            remaining -= d + 1;
+        }
+    }
+
+    /** Return true iff some slot other than the fast one will move on
+     *  the next step because it is at a notch itself (the double
+     *  step). */
+    private boolean middleAtNotch() {
+        for (int x = _slots.length - 2; x > 0; x -= 1) {
+            if (_slots[x].rotates() && _slots[x + 1].rotates()
+                && _slots[x - 1].rotates()
+                && _slots[x].atNotch(_positions[x])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Turn the fast rotor by N (0 <= N < alphabet size) positions. */
+    private void moveFast(int n) {
+        int last = _slots.length - 1;
+        _positions[last] = (_positions[last] + n) % _size;
+        _offsets[last] = (_offsets[last] + n) % _size;
+    }
+
+    /** Return the conversion of C (an alphabet index), after first
+     *  advancing the rotors. */
+    int convert(int c) {
+        advance();
+        _converted += 1;
+        return route(c);
+    }
+
+    /** Return the conversion of C (an alphabet index) at the current
+     *  positions, without advancing. */
+    int route(int c) {
+        c = _plugForward[c];
+        for (int x = _slots.length - 1; x >= 0; x -= 1) {
+            c = _slots[x].forward(_offsets[x], c);
+        }
+        for (int x = 0; x < _slots.length; x += 1) {
+            if (!_slots[x].reflecting()) {
+                c = _slots[x].backward(_offsets[x], c);
+            }
+        }
+        return _plugForward[c];
+    }
+
+    /** Convert the LEN characters IN[OFF..] into OUT[OUTOFF..].  IN and
+     *  OUT may be the same array. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        for (int x = 0; x < len; x += 1) {
+            int charInt = _alphabet.indexOf(in[off + x]);
+            if (charInt < 0) {
+                throw EnigmaException.error(
+                    "character %c not in alphabet", in[off + x]);
+            }
+            out[outOff + x] = _alphabet.toChar(convert(charInt));
+        }
+        if (Metrics.ENABLED) {
+            Metrics.listener().charactersConverted(len);
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG. */
+    String convert(String msg) {
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Spec I was built from. */
+    private final MachineSpec _spec;
+
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Alphabet size. */
+    private final int _size;
+
+    /** Rotor in each slot. */
+    private final RotorSpec[] _slots;
+
+    /** Position of each slot. */
+    private final int[] _positions;
+
+    /** Ring setting of each slot. */
+    private final int[] _rings;
+
+    /** Position minus ring setting of each slot, modulo _size. */
+    private final int[] _offsets;
+
+    /** Plugboard, applied forward on both sides as in Machine. */
+    private final int[] _plugForward;
+
+    /** Characters converted. */
+    private long _converted;
+}
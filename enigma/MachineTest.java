@@ -0,0 +1,194 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Andrew Tom
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a naval machine with reflector B, Beta, III, IV and I,
+     *  set to SETTING with plugboard PLUGS. */
+    static Machine navalMachine(String setting, String plugs) {
+        Machine m = new Machine(UPPER, 5, 3);
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                       UPPER)));
+        rotors.add(new FixedRotor("Beta",
+                new Permutation(NAVALA.get("Beta"), UPPER)));
+        rotors.add(new MovingRotor("III",
+                new Permutation(NAVALA.get("III"), UPPER), "V"));
+        rotors.add(new MovingRotor("IV",
+                new Permutation(NAVALA.get("IV"), UPPER), "J"));
+        rotors.add(new MovingRotor("I",
+                new Permutation(NAVALA.get("I"), UPPER), "Q"));
+        m.insertRotors(rotors);
+        m.setRotors(setting);
+        m.setPlugboard(new Permutation(plugs, UPPER));
+        return m;
+    }
+
+    /** A message long enough to wrap around a full rotor cycle. */
+    static String longMessage() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 20000; i += 1) {
+            msg.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        return msg.toString();
+    }
+
+    /** Return the settings of slots 2-4 of M as letters. */
+    private static String fastSettings(Machine m) {
+        String result = "";
+        for (int x = 2; x < 5; x += 1) {
+            result += UPPER.toChar(m.rotorList().get(x).setting());
+        }
+        return result;
+    }
+
+    @Test
+    public void doubleStep() {
+        Machine m = MachineSpecTest.navalSpec()
+            .newMachine("* B Beta I II III AADU");
+        String[] expected = {"ADV", "AEW", "BFX", "BFY"};
+        for (String e : expected) {
+            m.advanceMachine();
+            assertEquals(e, fastSettings(m));
+        }
+    }
+
+    @Test
+    public void steppingDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean =
+            java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        Machine m = navalMachine("AADU", "");
+        for (int x = 0; x < 100000; x += 1) {
+            m.advanceMachine();
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int x = 0; x < 100000; x += 1) {
+            m.advanceMachine();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assertTrue("allocated " + allocated, allocated < 4096);
+    }
+
+    @Test
+    public void basicConvert() {
+        Machine m = navalMachine("AXLE", "(HQ) (EX) (IP) (TR) (BY)");
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void tapeMatchesRotors() {
+        String msg = longMessage();
+        Machine plain = navalMachine("AAUV", "(AB) (CD)");
+        Machine taped = navalMachine("AAUV", "(AB) (CD)");
+        assertTrue(taped.compileTape());
+        assertTrue(taped.compiled());
+        assertEquals(plain.convert(msg), taped.convert(msg));
+    }
+
+    @Test
+    public void tapeDroppedOnPlugboardChange() {
+        Machine plain = navalMachine("ZZZZ", "");
+        Machine taped = navalMachine("ZZZZ", "");
+        taped.compileTape();
+        assertEquals(plain.convert("HELLOWORLD"), taped.convert("HELLOWORLD"));
+        Permutation plugs = new Permutation("(QW)", UPPER);
+        plain.setPlugboard(plugs);
+        taped.setPlugboard(plugs);
+        assertFalse(taped.compiled());
+        assertEquals(plain.convert("HELLOWORLD"), taped.convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void seekMatchesStepping() {
+        Machine stepped = navalMachine("AADU", "");
+        Machine sought = navalMachine("AADU", "");
+        for (int n = 0; n < 20000; n += 1) {
+            stepped.advanceMachine();
+        }
+        sought.seek(20000);
+        assertEquals(20000, sought.position());
+        for (int x = 0; x < stepped.numRotors(); x += 1) {
+            assertEquals(stepped.rotorList().get(x).setting(),
+                         sought.rotorList().get(x).setting());
+        }
+        assertEquals(stepped.convert("ENIGMA"), sought.convert("ENIGMA"));
+    }
+
+    @Test
+    public void seekBackwardAndFar() {
+        Machine m = navalMachine("AXLE", "(HQ) (EX) (IP) (TR) (BY)");
+        m.seek(1L << 40);
+        m.seek(0);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+        m.seek(7);
+        assertEquals("OILPUBKJZPISFXDW", m.convert("SHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void seekAcrossCycles() {
+        int steps = 60000;
+        Machine stepped = navalMachine("ZDQV", "");
+        int[][] settings = new int[steps + 1][];
+        for (int n = 0; n <= steps; n += 1) {
+            settings[n] = new int[stepped.numRotors()];
+            for (int x = 0; x < stepped.numRotors(); x += 1) {
+                settings[n][x] = stepped.rotorList().get(x).setting();
+            }
+            stepped.advanceMachine();
+        }
+        Machine sought = navalMachine("ZDQV", "");
+        Random random = new Random(5);
+        for (int k = 0; k < 200; k += 1) {
+            int n = random.nextInt(steps + 1);
+            sought.seek(n);
+            assertEquals(n, sought.position());
+            for (int x = 0; x < sought.numRotors(); x += 1) {
+                assertEquals("position " + n, settings[n][x],
+                             sought.rotorList().get(x).setting());
+            }
+        }
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        String msg = longMessage() + longMessage();
+        Machine seq = navalMachine("AADU", "(AB) (CD)");
+        Machine par = navalMachine("AADU", "(AB) (CD)");
+        assertEquals(seq.convert(msg), par.convertParallel(msg));
+        assertEquals(seq.position(), par.position());
+        assertEquals(seq.convert("ENIGMA"), par.convert("ENIGMA"));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        Machine m = navalMachine("AXLE", "(HQ) (EX) (IP) (TR) (BY)");
+        Machine c = m.copy();
+        assertEquals("QVPQS", m.convert("FROMH"));
+        assertEquals("QVPQS", c.convert("FROMH"));
+    }
+
+}
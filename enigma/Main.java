@@ -1,13 +1,21 @@
 package enigma;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.nio.file.Path;
 
-import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
-import java.util.NoSuchElementException;
+import java.util.HashMap;
 import java.util.Hashtable;
 
 import static enigma.EnigmaException.*;
@@ -15,7 +23,7 @@ import static enigma.EnigmaException.*;
 /** Enigma simulator.
  *  @author Andrew Tom
  */
-public final class Main {
+public final class Main implements Closeable {
 
     /** Process a sequence of encryptions and decryptions, as
      *  specified by ARGS, where 1 <= ARGS.length <= 3.
@@ -25,10 +33,42 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  ARGS may be preceded by the option
+     *  --mapped, which reads an input file and writes an output file
+     *  through memory-mapped and direct-buffer NIO channels.
+     *
+     *  If a precompiled image of the configuration file (see
+     *  ConfigImage) sits next to it and is up to date, the image is
+     *  loaded instead of parsing the text.  The arguments
+     *  --compile CONFIG [IMAGE] write such an image and exit, and
+     *  --tables CONFIG FILE [RINGS] write the scrambler tables of every
+     *  key of the configuration (see StateTables) and exit.
+     *  --serve ADDRESS CONFIG... serves the configurations, each known
+     *  by its name as given, over a socket (see EnigmaServer and
+     *  Protocol.address), and --load ADDRESS CONFIG SETTING
+     *  [CONNECTIONS [REQUESTS [DEPTH]]] drives such a server and prints
+     *  its latency and throughput. */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            if (args.length > 0 && args[0].equals(COMPILE_OPTION)) {
+                compile(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equals(TABLES_OPTION)) {
+                tables(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equals(SERVE_OPTION)) {
+                serve(args);
+                return;
+            }
+            if (args.length > 0 && args[0].equals(LOAD_OPTION)) {
+                load(args);
+                return;
+            }
+            try (Main main = new Main(args)) {
+                main.process();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -36,350 +76,250 @@ public final class Main {
         System.exit(1);
     }
 
-    /** Check ARGS and open the necessary files (see comment on main). */
-    Main(String[] args) {
-        if (args.length < 1 || args.length > 3) {
-            throw error("Only 1, 2, or 3 command-line arguments allowed");
-        }
-
-        _config = getInput(args[0]);
-
-        if (args.length > 1) {
-            _input = getInput(args[1]);
-        } else {
-            _input = new Scanner(System.in);
-        }
-
-        if (args.length > 2) {
-            _output = getOutput(args[2]);
-        } else {
-            _output = System.out;
+    /** Compile the configuration named in ARGS, which start with
+     *  --compile, to a binary image. */
+    private static void compile(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            throw error("Usage: --compile CONFIG [IMAGE]");
         }
+        String image =
+            args.length > 2 ? args[2] : ConfigImage.imageName(args[1]);
+        ConfigImage.compile(args[1], image);
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
-        try {
-            return new Scanner(new File(name));
-        } catch (IOException excp) {
-            throw error("could not open %s", name);
+    /** Write the scrambler tables of the configuration named in ARGS,
+     *  which start with --tables, to the file named there. */
+    private static void tables(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            throw error("Usage: --tables CONFIG FILE [RINGS]");
         }
+        KeySpace keys = new KeySpace(loadSpec(args[1]),
+                                     args.length > 3 ? args[3] : "");
+        StateTables.write(keys, Path.of(args[2]));
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
-        try {
-            return new PrintStream(new File(name));
-        } catch (IOException excp) {
-            throw error("could not open %s", name);
+    /** Serve the configurations named in ARGS, which start with --serve,
+     *  until killed. */
+    private static void serve(String[] args) {
+        if (args.length < 3) {
+            throw error("Usage: --serve ADDRESS CONFIG...");
         }
+        HashMap<String, MachineSpec> configs =
+            new HashMap<String, MachineSpec>();
+        for (int x = 2; x < args.length; x += 1) {
+            configs.put(args[x], loadSpec(args[x]));
+        }
+        new EnigmaServer(Protocol.address(args[1]), configs,
+                         Runtime.getRuntime().availableProcessors()).run();
     }
 
-    /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output.
-     *
-     *  This method should be focusing on input and output
-     *  */
-    private void process() {
-        ArrayList<ArrayList<String>> nestedArr =
-                new ArrayList<ArrayList<String>>();
-        ArrayList<String> inputList = new ArrayList<String>();
-        String[] inputArr;
-        boolean blankLine = true;
-        while (_input.hasNextLine()) {
-            String nextline = _input.nextLine();
-
-            for (int x = 0; x < nextline.length(); x += 1) {
-                blankLine = false;
+    /** Drive a server as described by ARGS, which start with --load, and
+     *  print the report. */
+    private static void load(String[] args) {
+        if (args.length < 4 || args.length > 7) {
+            throw error("Usage: --load ADDRESS CONFIG SETTING "
+                        + "[CONNECTIONS [REQUESTS [DEPTH]]]");
+        }
+        int[] counts = { 4, 10000, 16 };
+        for (int x = 4; x < args.length; x += 1) {
+            try {
+                counts[x - 4] = Integer.parseInt(args[x]);
+            } catch (NumberFormatException excp) {
+                throw error("bad count: %s", args[x]);
             }
-            if (blankLine) {
-                _output.println();
-                continue;
+            if (counts[x - 4] <= 0) {
+                throw error("count must be positive: %s", args[x]);
             }
-            inputList.add(nextline);
         }
+        LoadGenerator load = new LoadGenerator(Protocol.address(args[1]),
+                                               args[2], args[3],
+                                               LOAD_MESSAGE);
+        System.out.println(load.run(counts[0], counts[1], counts[2]));
+    }
 
-        while (!inputList.isEmpty()) {
-            boolean firsttime = true;
-            ArrayList<String> ne = new ArrayList<String>();
-
-            for (int x = 0; !inputList.isEmpty(); ) {
-                String adder = inputList.get(x).replaceAll("\\s+", "");
-                if (firsttime) {
-                    ne.add(inputList.get(x));
-                    firsttime = false;
-                    inputList.remove(x);
-                } else if (!inputList.get(x).startsWith("*")) {
-                    ne.add(adder);
-                    inputList.remove(x);
-                } else if (inputList.get(x).startsWith("*")) {
-                    break;
-                }
-
-            }
-            nestedArr.add(ne);
+    /** Return the spec of the configuration file named CONFIG, loaded
+     *  from an up-to-date compiled image of it if there is one, and
+     *  otherwise parsed from the file itself. */
+    private static MachineSpec loadSpec(String config) {
+        MachineSpec spec =
+            ConfigImage.load(config, ConfigImage.imageName(config));
+        if (spec != null) {
+            return spec;
         }
-
-        Machine m = readConfig();
-
-
-
-        for (int x = 0; x < nestedArr.size(); x += 1) {
-            ArrayList<String> cur = nestedArr.get(x);
-            processHelper(cur, m);
-
+        try (Reader reader = new BufferedReader(new FileReader(config))) {
+            ConfigParser parser = new ConfigParser(reader);
+            parser.parse();
+            return new MachineSpec(parser.alphabet(), parser.numRotors(),
+                                   parser.numPawls(), parser.rotors());
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
         }
-
     }
 
-    /** helper for the process hehe.
-     * @param m da machine
-     * @param inputList da input
-     * */
-    private void processHelper(ArrayList<String> inputList, Machine m) {
-        String settingLine = "";
-        String insertSpace = " ";
-
-
-        settingLine = inputList.get(0);
-        inputList.remove(0);
-        setUp(m, settingLine);
-
-        int numMoving = 0;
-        for (int x = 0; x < m.rotorList().size(); x += 1) {
-            Rotor cur = m.rotorList().get(x);
-            if (x == 0 && !cur.reflecting()) {
-                throw EnigmaException.error("First rotor must be reflector!");
-            } else if (x > 0 && cur.reflecting()) {
-                throw EnigmaException.error("Reflector can't be past 0th pos!");
-            }
-
-            if (cur.rotates()) {
-                numMoving++;
-            }
+    /** Check ARGS and open the necessary files (see comment on main). */
+    Main(String[] args) {
+        boolean mapped = args.length > 0 && args[0].equals(MAPPED_OPTION);
+        if (mapped) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length < 1 || args.length > 3) {
+            throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        if (numMoving != m.numPawls()) {
-            throw EnigmaException.error("num pawls boo");
+        if (Metrics.ENABLED) {
+            Metrics.register();
         }
+        _configName = args[0];
 
-        for (int x = 0; x < inputList.size(); x += 1) {
-            String cur = m.convert(inputList.get(x));
-            int counter = 0;
-            for (int y = 0; y < cur.length() + 1; y += 1) {
-                counter += 1;
-                if (counter == 6) {
-                    cur = cur.substring(0, y) + " "
-                            +
-                            cur.substring(y, cur.length());
-                    counter = 0;
+        try {
+            if (args.length > 1 && mapped) {
+                MappedLineReader reader = new MappedLineReader(args[1]);
+                _opened.add(reader);
+                _lines = reader::nextLine;
+            } else {
+                if (args.length > 1) {
+                    _input = getInput(args[1]);
+                    _opened.add(_input);
+                } else {
+                    _input = new Scanner(System.in);
                 }
-
+                _lines =
+                    () -> _input.hasNextLine() ? _input.nextLine() : null;
             }
 
-            cur = cur.trim();
-            _output.println(cur);
+            Writer out;
+            if (args.length > 2 && mapped) {
+                out = new ChannelWriter(args[2]);
+                _opened.add(out);
+            } else {
+                if (args.length > 2) {
+                    _output = getOutput(args[2]);
+                    _opened.add(_output);
+                } else {
+                    _output = System.out;
+                }
+                out = new OutputStreamWriter(_output);
+            }
+            _interactive = args.length == 1;
+            _writer = new GroupedWriter(out, GROUP_SIZE, LINE_WIDTH);
+        } catch (EnigmaException excp) {
+            close();
+            throw excp;
         }
-
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config.
-     *  This is the method that reads the whole config file.
-     *  */
-    private Machine readConfig() {
-        ArrayList<String> rotorBox = new ArrayList<String>();
-        ArrayList<Rotor> rotorList = new ArrayList<Rotor>();
-        String curRotor = ""; String[] lineArr;
-        String wholeFile = "";
-        String alphabetStr = "";
-        String numRotStr = ""; String numPawlStr = "";
-        int intRotors;
-        int intPawls;
-        int newRotor = 0;
+    /** Flush my output and close the input and output files I opened,
+     *  leaving the standard input and output open. */
+    @Override
+    public void close() {
+        IOException failure = null;
         try {
-            while (_config.hasNextLine()) {
-                String line = _config.nextLine();
-                wholeFile += line + " ";
+            if (_writer != null) {
+                _writer.flush();
             }
-            wholeFile = wholeFile.trim();
-            wholeFile = wholeFile.replaceAll("\\)\\s*\\w+\\s*\\(", "\\)\\(");
-            lineArr = wholeFile.split("\\s+");
-            for (int x = 0; x < lineArr.length; x += 1) {
-                if (x == 0) {
-                    alphabetStr = lineArr[x];
-                    continue;
-                } else if (x == 1) {
-                    numRotStr = lineArr[x];
-                    continue;
-                } else if (x == 2) {
-                    numPawlStr = lineArr[x];
-                    continue;
-                }
-                boolean inParen = false;
-                if (!lineArr[x].startsWith("(") || x == lineArr.length - 1) {
-                    if (!curRotor.equals("")) {
-                        if (x == lineArr.length - 1) {
-                            rotorBox.add(curRotor + lineArr[x]);
-                            break;
-                        }
-                        rotorBox.add(curRotor);
-                    }
-                    curRotor = "";
-                    curRotor += lineArr[x] + " ";
-                    curRotor += lineArr[x + 1] + " ";
-                    x += 1;
-                } else {
-                    curRotor += lineArr[x] + " ";
+        } finally {
+            for (int x = _opened.size() - 1; x >= 0; x -= 1) {
+                try {
+                    _opened.get(x).close();
+                } catch (IOException excp) {
+                    failure = excp;
                 }
             }
-            confighelp(alphabetStr, rotorList, rotorBox);
-            try {
-                intRotors = Integer.parseInt(numRotStr);
-                intPawls = Integer.parseInt(numPawlStr);
-            } catch (NumberFormatException oof) {
-                throw EnigmaException.error("numbers wrong");
-            }
-            return new Machine(_alphabet, intRotors, intPawls);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+            _opened.clear();
+        }
+        if (failure != null) {
+            throw error("could not close files: %s", failure.getMessage());
         }
     }
 
-    /** Helper for the readconfig.
-     * @param alphabetStr string of alpha
-     * @param rotorBox arraylist of rotor strings
-     * @param rotorList arraylist of rotor objects
-     * */
-    public void confighelp(String alphabetStr,
-                           ArrayList<Rotor> rotorList,
-                           ArrayList<String> rotorBox) {
-        _alphabet = new Alphabet(alphabetStr);
-        for (int x = 0; x < rotorBox.size(); x += 1) {
-            String cur = rotorBox.get(x);
-            cur = cur.trim();
-            rotorList.add(readRotor(cur));
-        }
-        for (int x = 0; x < rotorList.size(); x += 1) {
-            Rotor cur = rotorList.get(x);
-            String name = cur.name();
-            _possibleRotors.put(name, cur);
+    /** Return a Scanner reading from the file named NAME. */
+    private Scanner getInput(String name) {
+        try {
+            return new Scanner(new File(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
         }
     }
 
-
-    /** Return a rotor, reading its description from _config.
-     * @param rotorStr dd
-     * */
-    private Rotor readRotor(String rotorStr) {
+    /** Return a PrintStream writing to the file named NAME. */
+    private PrintStream getOutput(String name) {
         try {
-            boolean moving = false;
-            boolean reflector = false;
-            boolean fixed = false;
-
-            String cycles = "";
-            String notches = "";
-            String[] arr = rotorStr.split("\\s+");
-            String name = arr[0];
-            String type = arr[1];
-
-            if (type.charAt(0) == 'M') {
-                moving = true;
-            } else if (type.charAt(0) == 'N') {
-                fixed = true;
-            } else if (type.charAt(0) == 'R') {
-                reflector = true;
-            } else {
-                throw EnigmaException.error("Wrong rotor type");
-            }
+            return new PrintStream(new File(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
 
-            for (int x = 0; x < type.length(); x += 1) {
-                if (x == 0) {
-                    continue;
+    /** Configure an Enigma machine from the contents of configuration
+     *  file _configName and apply it to the messages in _input, sending the
+     *  results to _output.
+     *
+     *  Input is handled one line at a time: each "*" line sets the
+     *  machine up, and each message line after it is converted and
+     *  printed before the next line is read, so memory use is bounded
+     *  by the longest line.  Blank lines ahead of the first setting
+     *  line are echoed as they come.
+     *  */
+    void process() {
+        try {
+            Machine m = null;
+            CharSequence nextline;
+            while ((nextline = _lines.nextLine()) != null) {
+                if (Metrics.ENABLED) {
+                    Metrics.listener().charsIn(nextline.length() + 1);
+                }
+                if (m == null) {
+                    if (nextline.length() == 0) {
+                        _writer.newLine();
+                        continue;
+                    }
+                    m = readConfig();
+                    setUp(m, nextline.toString());
+                } else if (nextline.length() > 0
+                           && nextline.charAt(0) == '*') {
+                    setUp(m, nextline.toString());
+                } else {
+                    processMessage(m, nextline);
+                }
+                if (_interactive) {
+                    _writer.flush();
                 }
-                notches += type.charAt(x);
-            }
-
-            for (int x = 2; x < arr.length; x += 1) {
-                cycles += arr[x] + " ";
             }
-            cycles.trim();
-
-            Permutation p = new Permutation(cycles, _alphabet);
-            if (moving) {
-                MovingRotor r = new MovingRotor(name, p, notches);
-                return r;
-            } else if (fixed) {
-                FixedRotor r = new FixedRotor(name, p);
-                return r;
-            } else if (reflector) {
-                Reflector r = new Reflector(name, p);
-                return r;
+            if (m == null) {
+                readConfig();
             }
-
-            throw EnigmaException.error("oops");
-
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+        } finally {
+            _writer.flush();
         }
     }
 
-    /** setuphelper function.
-     * @param settingList the list of settings in strings
-     * @param settingArr the array of settings in strings
-     * @param M machine M
-     * */
-    public void setuphelper(ArrayList<String> settingList, String[] settingArr,
-                            Machine M) {
-        for (int x = 0; x < settingArr.length; x += 1) {
-            settingList.add(settingArr[x]);
+    /** Convert the message line LINE with M, ignoring whitespace in
+     *  it, and print it. */
+    private void processMessage(Machine m, CharSequence line) {
+        _writer.writeMessage(m, line);
+        if (Metrics.ENABLED) {
+            Metrics.listener().messageProcessed();
         }
+    }
 
-        if (!settingList.get(0).equals("*")) {
-            throw EnigmaException.error("Missing *");
-        }
-        settingList.remove(0);
-        ArrayList<Rotor> insertRots = new ArrayList<Rotor>();
-        HashSet<String> rotorDupe = new HashSet<String>();
-        for (int x = 0; x < M.numRotors(); x += 1) {
-            String curRotStr = settingList.get(0);
-            if (!_possibleRotors.containsKey(curRotStr)) {
-                throw EnigmaException.error("Rotor name incorrect");
-            }
-
-            rotorDupe.add(curRotStr);
-
-            insertRots.add(_possibleRotors.get(curRotStr));
-            settingList.remove(0);
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _configName.
+     *  This is the method that reads the whole config file, in one
+     *  pass through a ConfigParser, unless an up-to-date compiled
+     *  image of it can be loaded instead.  The file is open only while
+     *  it is parsed.
+     *  */
+    Machine readConfig() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        _spec = loadSpec(_configName);
+        _alphabet = _spec.alphabet();
+        for (RotorSpec r : _spec.rotors().values()) {
+            _possibleRotors.put(r.name(), r.newRotor());
         }
-        int firstMoving = 0;
-        boolean first = true;
-
-        if (rotorDupe.size() < insertRots.size()) {
-            throw EnigmaException.error("Duplicate rotors in setting!");
+        if (Metrics.ENABLED) {
+            Metrics.listener().configLoaded(System.nanoTime() - start);
         }
-        for (int x = 0; x < insertRots.size(); x += 1) {
-            Rotor cur = insertRots.get(x);
-
-            if (cur.rotates() && first) {
-                firstMoving = x;
-                first = false;
-            }
-
-            if (!cur.rotates() && x > firstMoving && !first) {
-                throw EnigmaException.error("Fixed in bad spot");
-            }
-
-            if (x == 0 && !cur.reflecting()) {
-                throw EnigmaException.error("First rotor must be reflector!");
-            } else if (x > 0 && cur.reflecting()) {
-                throw EnigmaException.error("Reflector can't be past 0th pos!");
-            }
-        }
-        M.insertRotors(insertRots);
-        M.setRotors(settingList.get(0));
-        settingList.remove(0);
+        return _spec.newMachine();
     }
 
     /** Set M according to the specification given on SETTINGS,
@@ -387,79 +327,83 @@ public final class Main {
      *
      *  This is assuming that Machine has been instantiated already
      *  and just needs to have the rotors and rotor settings put in
-     *  and also plugboard
+     *  and also plugboard.  M gets its own rotors from the compiled
+     *  library, so machines never share rotor state.
      *  */
     public void setUp(Machine M, String settings) {
-        if (M.rotorList().size() > 0) {
-            M.rotorListSetter(new ArrayList<Rotor>());
+        _spec.parse(settings).applyTo(M);
+        if (Metrics.ENABLED) {
+            Metrics.listener().settingApplied();
         }
+    }
 
+    /** Alphabet used in this machine. */
+    private Alphabet _alphabet;
 
-        ArrayList<String> settingList = new ArrayList<String>();
-        String[] settingArr = settings.split("\\s+");
+    /** Source of input messages, unless they are memory-mapped. */
+    private Scanner _input;
 
-        setuphelper(settingList, settingArr, M);
-        String defaultRings = "";
-        for (int x = 0; x < M.numRotors(); x += 1) {
-            char zero = M.rotorList().get(0).alphabet().toChar(0);
-            Rotor cur = M.rotorList().get(x);
-            if (!cur.reflecting()) {
-                defaultRings += zero;
-            }
-        }
-        M.setRingSetting(defaultRings);
-        if (!settingList.isEmpty()) {
-            if (!settingList.get(0).startsWith("(")) {
-                String ringSetting = settingList.get(0);
-                M.setRingSetting(ringSetting);
-                settingList.remove(0);
-            }
-        }
-        String concatPlugs = "";
-        for (int x = 0; x < settingList.size(); x += 1) {
-            String cur = settingList.get(x);
-            concatPlugs += cur.trim();
-        }
-        String plugbord = "";
-        boolean inParen = false;
-        for (int x = 0; x < concatPlugs.length(); x += 1) {
-            if (concatPlugs.charAt(x) == '(') {
-                inParen = true;
-                plugbord += '(';
-                continue;
-            }
-            if (concatPlugs.charAt(x) == ')') {
-                inParen = false;
-                plugbord += ')';
-                continue;
-            }
-            if (inParen) {
-                plugbord += concatPlugs.charAt(x);
-            }
-        }
-        Permutation plugPerm;
-        Alphabet alpha = M.rotorList().get(0).alphabet();
-        plugPerm = new Permutation(plugbord.trim(), alpha);
-        M.setPlugboard(plugPerm);
+    /** A source of input lines. */
+    private interface LineSource {
+        /** Return the next line without its terminator, or null at the
+         *  end of input. */
+        CharSequence nextLine();
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-    }
+    /** Lines of the input messages, from _input or a mapped file. */
+    private LineSource _lines;
 
-    /** Alphabet used in this machine. */
-    private Alphabet _alphabet;
+    /** Option selecting memory-mapped file input and output. */
+    static final String MAPPED_OPTION = "--mapped";
 
-    /** Source of input messages. */
-    private Scanner _input;
+    /** Option that compiles a configuration image. */
+    static final String COMPILE_OPTION = "--compile";
+
+    /** Option that writes scrambler tables. */
+    static final String TABLES_OPTION = "--tables";
+
+    /** Option that runs a server. */
+    static final String SERVE_OPTION = "--serve";
+
+    /** Option that runs a load generator against a server. */
+    static final String LOAD_OPTION = "--load";
+
+    /** Text of each load generator request. */
+    static final String LOAD_MESSAGE =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING";
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Name of the configuration file. */
+    private String _configName;
+
+    /** Files opened by the constructor, in order, for close(). */
+    private final ArrayList<Closeable> _opened = new ArrayList<Closeable>();
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Formats and buffers everything written to _output. */
+    private GroupedWriter _writer;
+
+    /** True iff input comes from the standard input, in which case
+     *  output is flushed after every line. */
+    private boolean _interactive;
+
+    /** Characters per output group. */
+    static final int GROUP_SIZE = 5;
+
+    /** Maximum output line width (0 for no limit). */
+    static final int LINE_WIDTH = 0;
+
+    /** Compiled configuration getter.
+     * @return the spec built by the last readConfig(), or null.
+     */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Compiled form of the configuration. */
+    private MachineSpec _spec;
+
     /** Possible rotors getter.
      * @return possible rotors.
      */
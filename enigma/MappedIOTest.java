@@ -0,0 +1,106 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/** The suite of all JUnit tests for the memory-mapped I/O classes.
+ *  @author Andrew Tom
+ */
+public class MappedIOTest {
+
+    /** Return a temporary file holding CONTENTS. */
+    private File tempFile(String contents) throws IOException {
+        File f = File.createTempFile("enigma", ".txt");
+        f.deleteOnExit();
+        Files.write(f.toPath(), contents.getBytes(Charset.defaultCharset()));
+        return f;
+    }
+
+    /** Return the lines read from F by a reader with windows of
+     *  WINDOW bytes, joined by '|'. */
+    private String readAll(File f, int window) throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (MappedLineReader r = new MappedLineReader(f.getPath(), window)) {
+            CharSequence line;
+            while ((line = r.nextLine()) != null) {
+                result.append(line).append('|');
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void linesAcrossWindows() throws IOException {
+        File f = tempFile("* B I\nHELLO\r\n\r\nWORLD\rLAST");
+        String expected = "* B I|HELLO||WORLD|LAST|";
+        assertEquals(expected, readAll(f, 1 << 20));
+        assertEquals(expected, readAll(f, 7));
+        assertEquals(expected, readAll(f, 8));
+    }
+
+    @Test
+    public void nonAsciiLine() throws IOException {
+        Charset cs = Charset.defaultCharset();
+        String line = new String("A\u00e9B".getBytes(cs), cs);
+        File f = tempFile(line + "\nC\n");
+        assertEquals(line + "|C|", readAll(f, 1 << 20));
+    }
+
+    @Test
+    public void crlfAtWindowEdge() throws IOException {
+        File f = tempFile("ABCDEFG\r\nHIJ\r\n");
+        assertEquals("ABCDEFG|HIJ|", readAll(f, 8));
+        assertEquals("ABCDEFG|HIJ|", readAll(f, 9));
+        f = tempFile("ABCDEFG\r\r\nHI");
+        assertEquals("ABCDEFG||HI|", readAll(f, 8));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void lineLongerThanWindow() throws IOException {
+        readAll(tempFile("ABCDEFGHIJ\nK"), 4);
+    }
+
+    @Test
+    public void mappedMainMatchesStreams() throws IOException {
+        File conf = tempFile(ConfigImageTest.CONFIG);
+        File in = tempFile("* R F II I BHA (AB)\r\nABCDE FGH\r\n\r\n"
+                           + "HGFEDCBA\n* R F I II AAA\nBBBBBBBBBBB\n");
+        File streamed = tempFile("");
+        File mapped = tempFile("");
+        File fds = new File("/proc/self/fd");
+        int open = fds.isDirectory() ? fds.list().length : 0;
+        for (int x = 0; x < 3; x += 1) {
+            Main.main(conf.getPath(), in.getPath(), streamed.getPath());
+            Main.main(Main.MAPPED_OPTION, conf.getPath(), in.getPath(),
+                      mapped.getPath());
+        }
+        if (fds.isDirectory()) {
+            assertEquals(open, fds.list().length);
+        }
+        String expected = new String(Files.readAllBytes(streamed.toPath()),
+                                     Charset.defaultCharset());
+        assertTrue(expected.length() > 0);
+        assertEquals(expected,
+                     new String(Files.readAllBytes(mapped.toPath()),
+                                Charset.defaultCharset()));
+    }
+
+    @Test
+    public void channelWriter() throws IOException {
+        File f = tempFile("old contents");
+        try (Writer w = new ChannelWriter(f.getPath())) {
+            w.write("QVPQS OKOIL");
+            w.write('\n');
+        }
+        assertEquals("QVPQS OKOIL\n",
+                     new String(Files.readAllBytes(f.toPath()),
+                                Charset.defaultCharset()));
+    }
+
+}
@@ -0,0 +1,185 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Reads the lines of a file through memory-mapped windows of the
+ *  file, finding line ends by scanning the raw bytes.  A line made up
+ *  only of ASCII bytes is returned as a view of the mapping, without
+ *  copying; other lines are decoded with the default charset.  Files
+ *  of any size are handled by remapping a window at the start of the
+ *  first line that does not fit in the current one.
+ *  @author Andrew Tom
+ */
+class MappedLineReader implements Closeable {
+
+    /** Largest window mapped at once. */
+    static final int WINDOW = 1 << 30;
+
+    /** A reader for the lines of the file named NAME. */
+    MappedLineReader(String name) {
+        this(name, WINDOW);
+    }
+
+    /** A reader for the lines of the file named NAME, mapping at most
+     *  WINDOWSIZE bytes at a time. */
+    MappedLineReader(String name, int windowSize) {
+        try {
+            _channel = FileChannel.open(Path.of(name),
+                                        StandardOpenOption.READ);
+            _size = _channel.size();
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not open %s", name);
+        }
+        _windowSize = windowSize;
+    }
+
+    /** Return the next line, without its terminator, or null at the end
+     *  of the file.  The result is only valid until the next call.
+     *  Lines end at \n, \r\n or \r. */
+    CharSequence nextLine() {
+        if (_pos >= _size) {
+            return null;
+        }
+        if (_window == null || _pos >= _windowStart + _window.limit()) {
+            map(_pos);
+        }
+        while (true) {
+            int start = (int) (_pos - _windowStart);
+            int limit = _window.limit();
+            int end = start;
+            int high = 0;
+            byte b = 0;
+            while (end < limit) {
+                b = _window.get(end);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                high |= b;
+                end += 1;
+            }
+            if (end == limit && _windowStart + limit < _size) {
+                if (start == 0) {
+                    throw EnigmaException.error("input line too long");
+                }
+                map(_pos);
+                continue;
+            }
+            int termLen = 0;
+            if (end < limit) {
+                termLen = b == '\r'
+                    && byteAt(_windowStart + end + 1) == '\n' ? 2 : 1;
+            }
+            _pos = _windowStart + end + termLen;
+            if (high < 0) {
+                byte[] bytes = new byte[end - start];
+                _window.get(start, bytes);
+                return new String(bytes, Charset.defaultCharset());
+            }
+            _line.set(start, end - start);
+            return _line;
+        }
+    }
+
+    /** Return the byte at file offset AT, which may lie just past the
+     *  current window, or -1 if AT is past the end of the file. */
+    private int byteAt(long at) {
+        if (at >= _size) {
+            return -1;
+        }
+        if (at < _windowStart + _window.limit()) {
+            return _window.get((int) (at - _windowStart));
+        }
+        ByteBuffer one = ByteBuffer.allocate(1);
+        try {
+            _channel.read(one, at);
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not read input");
+        }
+        return one.get(0);
+    }
+
+    /** Map the window beginning at file offset FROM. */
+    private void map(long from) {
+        try {
+            long len = Math.min(_windowSize, _size - from);
+            _window = _channel.map(FileChannel.MapMode.READ_ONLY, from, len);
+            _windowStart = from;
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not read input");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _window = null;
+        _channel.close();
+    }
+
+    /** An ASCII line of the current window, as characters. */
+    private class Line implements CharSequence {
+
+        /** Make me the LEN bytes at START in the current window. */
+        void set(int start, int len) {
+            _start = start;
+            _len = len;
+        }
+
+        @Override
+        public int length() {
+            return _len;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) _window.get(_start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[_len];
+            for (int x = 0; x < _len; x += 1) {
+                chars[x] = charAt(x);
+            }
+            return new String(chars);
+        }
+
+        /** Offset of my first byte in the window. */
+        private int _start;
+
+        /** My length. */
+        private int _len;
+    }
+
+    /** The file. */
+    private final FileChannel _channel;
+
+    /** Size of the file. */
+    private final long _size;
+
+    /** Largest window size. */
+    private final int _windowSize;
+
+    /** Current window. */
+    private MappedByteBuffer _window;
+
+    /** File offset of the current window. */
+    private long _windowStart;
+
+    /** File offset of the next line. */
+    private long _pos;
+
+    /** View returned for ASCII lines. */
+    private final Line _line = new Line();
+}
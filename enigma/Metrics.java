@@ -0,0 +1,70 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/** The switch and current listener for metrics.  Metrics are on only
+ *  when the JVM is started with -Denigma.metrics=true.  Every
+ *  instrumented call site tests the constant ENABLED first, so when it
+ *  is false the JIT removes the instrumentation entirely.
+ *
+ *  When enabled, events go to a shared EnigmaMetrics, which Main
+ *  registers as the MBean named by OBJECT_NAME, unless another listener
+ *  is installed with setListener().
+ *  @author Andrew Tom
+ */
+final class Metrics {
+
+    /** True iff metrics are collected. */
+    static final boolean ENABLED = Boolean.getBoolean("enigma.metrics");
+
+    /** Name of the MBean registered by register(). */
+    static final String OBJECT_NAME = "enigma:type=EnigmaMetrics";
+
+    /** Not instantiable. */
+    private Metrics() {
+    }
+
+    /** Return the listener receiving events. */
+    static MetricsListener listener() {
+        return _listener;
+    }
+
+    /** Send events to LISTENER from now on. */
+    static void setListener(MetricsListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        _listener = listener;
+    }
+
+    /** Return the shared counters used unless setListener() is called. */
+    static EnigmaMetrics standard() {
+        return STANDARD;
+    }
+
+    /** Register standard() with the platform MBean server under
+     *  OBJECT_NAME, if it is not already there. */
+    static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer()
+                    .isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(STANDARD, EnigmaMetricsMBean.class),
+                    name);
+            }
+        } catch (JMException excp) {
+            throw EnigmaException.error("could not register %s: %s",
+                                        OBJECT_NAME, excp.getMessage());
+        }
+    }
+
+    /** Shared counters. */
+    private static final EnigmaMetrics STANDARD = new EnigmaMetrics();
+
+    /** Current listener. */
+    private static volatile MetricsListener _listener = STANDARD;
+}
@@ -0,0 +1,33 @@
+package enigma;
+
+/** Receives events from the instrumented parts of the simulator when
+ *  metrics are enabled (see Metrics).  Implementations are called from
+ *  whatever thread does the work, often several at once, and should be
+ *  cheap and thread-safe.
+ *  @author Andrew Tom
+ */
+interface MetricsListener {
+
+    /** COUNT characters were converted by a Machine or MachineState. */
+    void charactersConverted(long count);
+
+    /** Main converted one message line. */
+    void messageProcessed();
+
+    /** Main applied one setting line. */
+    void settingApplied();
+
+    /** The rotor in SLOT advanced one step.  TURNOVER is true when it
+     *  was carried by a notch rather than being the fast rotor. */
+    void rotorAdvanced(int slot, boolean turnover);
+
+    /** A configuration was read (or loaded from an image) in NANOS
+     *  nanoseconds. */
+    void configLoaded(long nanos);
+
+    /** Main read COUNT characters of input, counting line ends. */
+    void charsIn(long count);
+
+    /** Main wrote COUNT characters of output. */
+    void charsOut(long count);
+}
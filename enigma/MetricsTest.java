@@ -0,0 +1,109 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/** The suite of all JUnit tests for EnigmaMetrics and Metrics.
+ *  @author Andrew Tom
+ */
+public class MetricsTest {
+
+    @Test
+    public void countersAcrossThreads() throws InterruptedException {
+        EnigmaMetrics metrics = new EnigmaMetrics();
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t += 1) {
+            Thread thread = new Thread(() -> {
+                for (int x = 0; x < 1000; x += 1) {
+                    metrics.charactersConverted(3);
+                    metrics.rotorAdvanced(4, false);
+                    if (x % 26 == 0) {
+                        metrics.rotorAdvanced(3, true);
+                    }
+                }
+                metrics.messageProcessed();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(12000, metrics.getCharactersConverted());
+        assertEquals(4, metrics.getMessagesProcessed());
+        assertArrayEquals(new long[] {0, 0, 0, 4 * 39, 4000},
+                          metrics.getRotorAdvances());
+        assertArrayEquals(new long[] {0, 0, 0, 4 * 39, 0},
+                          metrics.getTurnovers());
+        metrics.reset();
+        assertEquals(0, metrics.getCharactersConverted());
+        assertArrayEquals(new long[5], metrics.getRotorAdvances());
+    }
+
+    @Test
+    public void configAndBytes() {
+        EnigmaMetrics metrics = new EnigmaMetrics();
+        metrics.configLoaded(500);
+        metrics.configLoaded(300);
+        metrics.charsIn(10);
+        metrics.charsOut(12);
+        metrics.settingApplied();
+        assertEquals(2, metrics.getConfigLoads());
+        assertEquals(300, metrics.getLastConfigLoadNanos());
+        assertEquals(800, metrics.getTotalConfigLoadNanos());
+        assertEquals(10, metrics.getCharsIn());
+        assertEquals(12, metrics.getCharsOut());
+        assertEquals(1, metrics.getSettingsApplied());
+    }
+
+    @Test
+    public void mbeanRegistered() throws Exception {
+        Metrics.register();
+        Metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        Metrics.standard().settingApplied();
+        long applied = (Long) server.getAttribute(name, "SettingsApplied");
+        assertEquals(Metrics.standard().getSettingsApplied(), applied);
+    }
+
+    /** Converts with copies of a compiled machine, as convertParallel()
+     *  does, and exits with status 1 if the results are wrong.  Run
+     *  with metrics on by compiledCopiesWithMetrics(). */
+    static class CompiledCopies {
+        public static void main(String... unused) {
+            MachineSpec spec = KeySearchTest.smallSpec();
+            String setting = "* B III I KQ (AT)";
+            String msg = MachineTest.longMessage();
+            String expected = spec.newMachine(setting).convert(msg);
+            Machine m = spec.newMachine(setting);
+            if (!Metrics.ENABLED || !m.compileTape()
+                || !m.copy().convert(msg).equals(expected)
+                || !m.convertParallel(msg).equals(expected)
+                || Metrics.standard().getCharactersConverted() == 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    @Test
+    public void compiledCopiesWithMetrics() throws Exception {
+        Process child = new ProcessBuilder(
+            System.getProperty("java.home") + File.separator + "bin"
+            + File.separator + "java",
+            "-Denigma.metrics=true",
+            "-Djava.util.concurrent.ForkJoinPool.common.parallelism=4",
+            "-cp", System.getProperty("java.class.path"),
+            CompiledCopies.class.getName())
+            .inheritIO().start();
+        assertEquals(0, child.waitFor());
+    }
+
+}
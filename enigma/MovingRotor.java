@@ -11,27 +11,51 @@ class MovingRotor extends Rotor {
      *  PERM, and whose notches are at the positions indicated in NOTCHES.
      *  The Rotor is initally in its 0 setting (first character of its
      *  alphabet).
+     *
+     *  The notches are compiled here into a bitset and a table of
+     *  distances to the next notch, so that atNotch() and
+     *  notchDistance() cost the same however many notches there are.
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        int size = perm.size();
+        _notchBits = new long[(size + Long.SIZE - 1) / Long.SIZE];
+        for (int x = 0; x < notches.length(); x += 1) {
+            int n = perm.alphabet().indexOf(notches.charAt(x));
+            if (n < 0) {
+                throw EnigmaException.error("notch not in alphabet");
+            }
+            _notchBits[n >>> 6] |= 1L << n;
+        }
+        _nextNotch = new int[size];
+        int next = -1;
+        for (int pass = 0; pass < 2; pass += 1) {
+            for (int s = size - 1; s >= 0; s -= 1) {
+                if (isNotch(s)) {
+                    next = s;
+                }
+                if (next >= 0) {
+                    _nextNotch[s] = next >= s ? next - s : next + size - s;
+                } else {
+                    _nextNotch[s] = -1;
+                }
+            }
+        }
     }
 
-
-    @Override
-    void advance() {
-        set(permutation().wrap(setting() + 1));
+    /** A copy of ORIGINAL's wiring and notches, sharing its tables. */
+    private MovingRotor(MovingRotor original) {
+        super(original.name(), original.permutation());
+        _notches = original._notches;
+        _notchBits = original._notchBits;
+        _nextNotch = original._nextNotch;
     }
 
-    @Override
-    /** Ring setting setter for EC */
-    public void ringSetter(int p) {
-        _ringSetting = p;
-    }
 
     @Override
-    public int ringSetting() {
-        return _ringSetting;
+    void advance() {
+        set(permutation().wrap(setting() + 1));
     }
 
     /** getter method for notches.
@@ -41,6 +65,13 @@ class MovingRotor extends Rotor {
         return _notches;
     }
 
+    @Override
+    Rotor copy() {
+        MovingRotor result = new MovingRotor(this);
+        result.copyState(this);
+        return result;
+    }
+
     @Override
     boolean reflecting() {
         return false;
@@ -48,14 +79,18 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        int curNotch;
-        for (int x = 0; x < _notches.length(); x += 1) {
-            curNotch = alphabet().toInt(_notches.charAt(x));
-            if (curNotch == setting()) {
-                return true;
-            }
-        }
-        return false;
+        return isNotch(setting());
+    }
+
+    /** Return true iff setting S (0 <= S < size()) is a notch. */
+    boolean isNotch(int s) {
+        return (_notchBits[s >>> 6] & (1L << s)) != 0;
+    }
+
+    /** Return the number of advances from setting FROM until I am
+     *  at a notch (0 if FROM is a notch), or -1 if I have no notches. */
+    int notchDistance(int from) {
+        return _nextNotch[from];
     }
 
     @Override
@@ -64,8 +99,11 @@ class MovingRotor extends Rotor {
     }
 
     /** Instance var notches. */
-    private String _notches;
+    private final String _notches;
+
+    /** Bit s of the bitset is set iff setting s is a notch. */
+    private final long[] _notchBits;
 
-    /** Instance var ringsetting. */
-    private int _ringSetting;
+    /** _nextNotch[s] is notchDistance(s). */
+    private final int[] _nextNotch;
 }
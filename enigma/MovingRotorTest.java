@@ -72,4 +72,38 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkNotches() {
+        setRotor("VI", NAVALA, "ZM");
+        MovingRotor r = (MovingRotor) rotor;
+        for (int s = 0; s < 26; s += 1) {
+            assertEquals(s == 12 || s == 25, r.isNotch(s));
+            int expect = s <= 12 ? 12 - s : 25 - s;
+            assertEquals("distance from " + s, expect, r.notchDistance(s));
+        }
+        r.set('M');
+        assertTrue(r.atNotch());
+        r.advance();
+        assertFalse(r.atNotch());
+        setRotor("I", NAVALA, "");
+        assertEquals(-1, ((MovingRotor) rotor).notchDistance(3));
+    }
+
+    @Test
+    public void notchesInLargeAlphabet() {
+        char[] chars = new char[200];
+        for (int x = 0; x < chars.length; x += 1) {
+            chars[x] = (char) (0x100 + x);
+        }
+        Alphabet big = new Alphabet(new String(chars));
+        MovingRotor r = new MovingRotor("Big", new Permutation("", big),
+                                        "" + chars[70] + chars[130]);
+        assertTrue(r.isNotch(70));
+        assertTrue(r.isNotch(130));
+        assertFalse(r.isNotch(6));
+        assertEquals(0, r.notchDistance(70));
+        assertEquals(59, r.notchDistance(71));
+        assertEquals(139, r.notchDistance(131));
+    }
+
 }
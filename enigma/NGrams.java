@@ -0,0 +1,140 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Bigram and trigram log-probability tables over an Alphabet, built
+ *  from a sample of plain text.  Characters of the sample that are not
+ *  in the alphabet, even after upper-casing, are skipped, so that
+ *  "it was" counts the bigram "TW" as an Enigma operator would write
+ *  it.  Each table is a flat float[] indexed by the alphabet indices of
+ *  the n-gram read as a number in base alphabet size.  Unseen n-grams
+ *  get the log probability of a count of FLOOR.
+ *  @author Andrew Tom
+ */
+final class NGrams {
+
+    /** Count given to n-grams that do not occur in the sample. */
+    static final double FLOOR = 0.01;
+
+    /** Largest alphabet for which a trigram table is built. */
+    static final int MAX_SIZE = 64;
+
+    /** Tables for ALPHABET built from the characters of SAMPLE. */
+    NGrams(Alphabet alphabet, CharSequence sample) {
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        if (_size > MAX_SIZE) {
+            throw EnigmaException.error("alphabet too large for n-grams");
+        }
+        long[] bigrams = new long[_size * _size];
+        long[] trigrams = new long[_size * _size * _size];
+        int a = -1, b = -1;
+        for (int i = 0; i < sample.length(); i += 1) {
+            int c = indexOf(sample.charAt(i));
+            if (c < 0) {
+                continue;
+            }
+            if (b >= 0) {
+                bigrams[b * _size + c] += 1;
+                if (a >= 0) {
+                    trigrams[(a * _size + b) * _size + c] += 1;
+                }
+            }
+            a = b;
+            b = c;
+        }
+        _bigrams = logProbabilities(bigrams);
+        _trigrams = logProbabilities(trigrams);
+    }
+
+    /** Return tables for ALPHABET built from the UTF-8 text file
+     *  CORPUS. */
+    static NGrams load(Alphabet alphabet, Path corpus) {
+        try {
+            return new NGrams(alphabet, new String(Files.readAllBytes(corpus),
+                                                   StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not read corpus %s: %s",
+                                        corpus, excp.getMessage());
+        }
+    }
+
+    /** Return the alphabet index of CH, or of its upper case, or -1 if
+     *  neither is in my alphabet. */
+    private int indexOf(char ch) {
+        int c = _alphabet.indexOf(ch);
+        return c >= 0 ? c : _alphabet.indexOf(Character.toUpperCase(ch));
+    }
+
+    /** Return the base-10 log probabilities of COUNTS. */
+    private static float[] logProbabilities(long[] counts) {
+        long total = 0;
+        for (long n : counts) {
+            total += n;
+        }
+        double norm = Math.log10(Math.max(total, 1));
+        float[] result = new float[counts.length];
+        for (int x = 0; x < counts.length; x += 1) {
+            result[x] = (float) (Math.log10(Math.max(counts[x], FLOOR))
+                                 - norm);
+        }
+        return result;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the bigram table: the log probability of alphabet indices
+     *  a, b is at a * size + b.  Callers must not modify it. */
+    float[] bigrams() {
+        return _bigrams;
+    }
+
+    /** Return the trigram table: the log probability of alphabet
+     *  indices a, b, c is at (a * size + b) * size + c.  Callers must
+     *  not modify it. */
+    float[] trigrams() {
+        return _trigrams;
+    }
+
+    /** Return the log probability of the N-grams (N is 2 or 3) of the
+     *  first LEN alphabet indices of TEXT. */
+    double score(int[] text, int len, int n) {
+        double sum = 0;
+        if (n == 2) {
+            for (int i = 0; i + 1 < len; i += 1) {
+                sum += _bigrams[text[i] * _size + text[i + 1]];
+            }
+        } else {
+            for (int i = 0; i + 2 < len; i += 1) {
+                sum += _trigrams[(text[i] * _size + text[i + 1]) * _size
+                                 + text[i + 2]];
+            }
+        }
+        return sum;
+    }
+
+    /** Return the log probability of the trigrams of TEXT, which must
+     *  contain only characters of my alphabet. */
+    double score(String text) {
+        int[] indices = new int[text.length()];
+        for (int i = 0; i < indices.length; i += 1) {
+            indices[i] = _alphabet.toInt(text.charAt(i));
+        }
+        return score(indices, indices.length, 3);
+    }
+
+    /** Alphabet indexed. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Bigram log probabilities. */
+    private final float[] _bigrams;
+    /** Trigram log probabilities. */
+    private final float[] _trigrams;
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the NGrams class.
+ *  @author Andrew Tom
+ */
+public class NGramsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void counts() {
+        Alphabet alpha = new Alphabet();
+        NGrams ngrams = new NGrams(alpha, "the the, THE!");
+        int t = alpha.toInt('T'), h = alpha.toInt('H'), e = alpha.toInt('E');
+        float[] bi = ngrams.bigrams();
+        assertEquals(Math.log10(3.0 / 8), bi[t * 26 + h], 1e-5);
+        assertEquals(Math.log10(2.0 / 8), bi[e * 26 + t], 1e-5);
+        assertEquals(Math.log10(NGrams.FLOOR / 8), bi[h * 26 + t], 1e-5);
+        float[] tri = ngrams.trigrams();
+        assertEquals(Math.log10(3.0 / 7), tri[(t * 26 + h) * 26 + e], 1e-5);
+        assertEquals(2 * Math.log10(3.0 / 7) + 2 * Math.log10(2.0 / 7),
+                     ngrams.score("THETHE"), 1e-4);
+    }
+
+    @Test
+    public void englishBeatsGibberish() throws IOException {
+        Path corpus = Files.createTempFile("corpus", ".txt");
+        try {
+            Files.write(corpus, KeySearchTest.PLAIN.getBytes(
+                            StandardCharsets.UTF_8));
+            NGrams ngrams = NGrams.load(new Alphabet(), corpus);
+            assertTrue(ngrams.score("ITWASTHEAGEOFWISDOM")
+                       > ngrams.score("QXZVKJQWPZXMVKQJWXZ"));
+        } finally {
+            Files.delete(corpus);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void missingCorpus() {
+        NGrams.load(new Alphabet(), java.nio.file.Paths.get("no/such/file"));
+    }
+
+}
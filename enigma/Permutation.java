@@ -1,8 +1,6 @@
 package enigma;
 
-import java.util.Hashtable;
-import java.util.HashSet;
-
+import java.util.Arrays;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -10,15 +8,13 @@ import java.util.HashSet;
  */
 
 class Permutation {
-    /** permcycleforward.
+    /** Forward table: index i of the alphabet maps to _forward[i].
      */
-    private Hashtable<Object, Object> _permuteCycleForward =
-            new Hashtable<Object, Object>();
+    private int[] _forward;
 
-    /** permcyclebackward.
+    /** Inverse table: index i of the alphabet maps to _backward[i].
      */
-    private Hashtable<Object, Object> _permuteCycleBackward =
-            new Hashtable<Object, Object>();
+    private int[] _backward;
 
     /** Set this Permutation to that specified by CYCLES, a string in the
          *  form "(cccc) (cc) ..." where the c's are charactersin ALPHABET,which
@@ -27,40 +23,58 @@ class Permutation {
          *  Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        if (!cycles.equals("")) {
-            addCycle(cycles);
-        } else {
-            addEmptyCycle();
+        _forward = new int[alphabet.size()];
+        _backward = new int[alphabet.size()];
+        addEmptyCycle();
+        addCycle(cycles);
+    }
+
+    /** The permutation of ALPHABET that maps index i to FORWARD[i].
+     *  FORWARD is used directly and must not be modified afterwards. */
+    Permutation(Alphabet alphabet, int[] forward) {
+        _alphabet = alphabet;
+        if (forward.length != alphabet.size()) {
+            throw EnigmaException.error("Wiring table has the wrong size");
+        }
+        _forward = forward;
+        _backward = new int[forward.length];
+        Arrays.fill(_backward, -1);
+        for (int x = 0; x < forward.length; x += 1) {
+            int c = forward[x];
+            if (c < 0 || c >= forward.length || _backward[c] >= 0) {
+                throw EnigmaException.error("Wiring table is not a "
+                                            + "permutation");
+            }
+            _backward[c] = x;
         }
     }
 
-    /** Hashy forward.
+    /** Forward lookup table, indexed by alphabet position.
+     *  Callers must not modify it.
      *
-     * @return hashcycleforward
+     * @return the forward table
      */
-    public Hashtable<Object, Object> permForward() {
-        return _permuteCycleForward;
+    int[] forwardTable() {
+        return _forward;
     }
 
-    /** Hashy backward.
+    /** Inverse lookup table, indexed by alphabet position.
+     *  Callers must not modify it.
      *
-     * @return hashcycleback
+     * @return the inverse table
      */
-    public Hashtable<Object, Object> permBackward() {
-        return _permuteCycleBackward;
+    int[] backwardTable() {
+        return _backward;
     }
 
     /** Add empty cycle.
-     * Basically maps each letter to themselves because theres
-     * no permute cycle to use lol
+     * Basically maps each letter to themselves; the cycles are
+     * laid over this afterwards.
      */
     private void addEmptyCycle() {
-        int len = alphabet().salphabet().length();
-        String alphStr = alphabet().salphabet();
-        for (int x = 0; x < len; x += 1) {
-            char cur = alphStr.charAt(x);
-            _permuteCycleBackward.put(cur, cur);
-            _permuteCycleForward.put(cur, cur);
+        for (int x = 0; x < size(); x += 1) {
+            _backward[x] = x;
+            _forward[x] = x;
         }
     }
 
@@ -68,49 +82,38 @@ class Permutation {
      *  c0c1...cm.
      *
      *
-     *  THIS ACTUALLY ADDS ALL CYCLES.
+     *  THIS ACTUALLY ADDS ALL CYCLES, in one pass: each maximal run of
+     *  characters other than whitespace and parentheses is a cycle.
      *  */
     private void addCycle(String cycles) {
-        cycles = cycles.replaceAll("\\(", " ");
-        cycles = cycles.replaceAll("\\)", " ").trim();
-        String [] cycleArr = cycles.split("\\s+");
-
-        String concatenatedStr = cycles.replaceAll("\\s+", "").trim();
-
-
-        HashSet<Object> duplicateCheck = new HashSet<Object>();
-        for (int x = 0; x < concatenatedStr.length(); x += 1) {
-            duplicateCheck.add(concatenatedStr.charAt(x));
-
-            char curChar = concatenatedStr.charAt(x);
-            if (!alphabet().contains(curChar)) {
+        boolean[] seen = new boolean[size()];
+        int first = -1;
+        int prev = -1;
+        for (int x = 0; x <= cycles.length(); x += 1) {
+            char c = x < cycles.length() ? cycles.charAt(x) : ' ';
+            if (c == '(' || c == ')' || Character.isWhitespace(c)) {
+                if (first >= 0) {
+                    _forward[prev] = first;
+                    _backward[first] = prev;
+                    first = -1;
+                }
+                continue;
+            }
+            int cur = alphabet().indexOf(c);
+            if (cur < 0) {
                 throw EnigmaException.error("Cycle char not in alphabet!!");
             }
-        }
-        if (duplicateCheck.size() < concatenatedStr.length()) {
-            throw EnigmaException.error("Duplicate characters in Cycle");
-        }
-
-        for (int x = 0; x < size(); x += 1) {
-            char curAlpha = alphabet().salphabet().charAt(x);
-            String charToStr = Character.toString(curAlpha);
-            boolean notSelfMap = concatenatedStr.contains(charToStr);
-            if (!notSelfMap) {
-                _permuteCycleForward.put(curAlpha, curAlpha);
-                _permuteCycleBackward.put(curAlpha, curAlpha);
+            if (seen[cur]) {
+                throw EnigmaException.error("Duplicate characters in Cycle");
             }
-        }
-
-        for (String cycle : cycleArr) {
-            for (int pos = 0; pos < cycle.length(); pos += 1) {
-                int len = cycle.length();
-                char cur = cycle.charAt(pos);
-                char next = cycle.charAt((pos + 1) % len);
-                _permuteCycleForward.put(cur, next);
-                int negMod = ((pos - 1) % len + len) % len;
-                char prev = cycle.charAt(negMod);
-                _permuteCycleBackward.put(cur, prev);
+            seen[cur] = true;
+            if (first < 0) {
+                first = cur;
+            } else {
+                _forward[prev] = cur;
+                _backward[cur] = prev;
             }
+            prev = cur;
         }
     }
 
@@ -131,56 +134,50 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size.
      *
-     *  Changes int p to a char, then uses the permute
-     *  method that takes in a char to get the
-     *  permuted value.
+     *  Straight lookup in the forward table; only wraps when
+     *  p is out of range.
      *  */
     int permute(int p) {
-        if (p >= size() || p < 0) {
+        if (p >= _forward.length || p < 0) {
             p = wrap(p);
         }
-        char feed = alphabet().toChar(p);
-        return alphabet().toInt(permute(feed));
+        return _forward[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size.
      *
-     *  Changes int c to a char, then uses the invert
-     *  method that takes in a char to get the
-     *  permuted value.
+     *  Straight lookup in the inverse table; only wraps when
+     *  c is out of range.
      *  */
     int invert(int c) {
-        if (c >= size() || c < 0) {
+        if (c >= _backward.length || c < 0) {
             c = wrap(c);
         }
-        char feed = alphabet().toChar(c);
-        return alphabet().toInt(invert(feed));
+        return _backward[c];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET.
      *
-     *  Grabs the next val in the forward hash table.
+     *  Goes through the forward table by index.
      *  */
     char permute(char p) {
-        String charToStr = Character.toString(p);
-        if (!alphabet().salphabet().contains(charToStr)) {
+        if (!alphabet().contains(p)) {
             throw EnigmaException.error("Char not in Alphabet");
         }
-        return (char) _permuteCycleForward.get(p);
+        return alphabet().toChar(_forward[alphabet().toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C.
      *
-     * Grabs the next val in the backward hashtable.
+     * Goes through the inverse table by index.
      * */
     char invert(char c) {
-        String charToStr = Character.toString(c);
-        if (!alphabet().salphabet().contains(charToStr)) {
+        if (!alphabet().contains(c)) {
             throw EnigmaException.error("Char not in Alphabet");
         }
-        return (char) _permuteCycleBackward.get(c);
+        return alphabet().toChar(_backward[alphabet().toInt(c)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -191,13 +188,12 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself).
      *
-     *  Just checks the hash table if its mapped val
+     *  Just checks the forward table if its mapped val
      *  is the same as itself
      *  */
     boolean derangement() {
-        for (int x = 0; x < alphabet().size(); x += 1) {
-            char letter = alphabet().salphabet().charAt(x);
-            if ((char) _permuteCycleForward.get(letter) == letter) {
+        for (int x = 0; x < _forward.length; x += 1) {
+            if (_forward[x] == x) {
                 return false;
             }
         }
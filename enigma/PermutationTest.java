@@ -119,6 +119,17 @@ public class PermutationTest {
         assertFalse(pp.derangement());
     }
 
+    @Test
+    public void wrapAndTables() {
+        Permutation p = new Permutation("(AEF) (BCP)", new Alphabet());
+        assertEquals(4, p.permute(26));
+        assertEquals(5, p.invert(-26));
+        int[] fwd = p.forwardTable(), bwd = p.backwardTable();
+        for (int i = 0; i < p.size(); i += 1) {
+            assertEquals(i, bwd[fwd[i]]);
+        }
+    }
+
     /* ***** EXCEPTION TESTING HERE ***** */
     @Test(expected = EnigmaException.class)
     public void testNotInAlphabetPerm() {
@@ -0,0 +1,440 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Recovers the plugboard of a message whose rotor order, positions and
+ *  ring settings are known (from KeySearch or a Bombe stop, say) by
+ *  hill climbing over plug pairs.  A candidate plugboard is scored by
+ *  the n-gram log probability (see NGrams) of the decryption it gives,
+ *  first with bigrams, which climb well from a poor start, and then with
+ *  trigrams.  Several climbs from different random plugboards run in
+ *  parallel, and the best is kept.
+ *
+ *  Since the rotors are fixed, the scrambler wiring at each message
+ *  position is computed once.  Plaintext character i is then
+ *  p(S_i(p(c_i))) for plugboard p, scrambler S_i and ciphertext c_i.  A
+ *  move changes p for at most four letters, and only positions whose
+ *  ciphertext or scrambler output is one of those letters change, so a
+ *  move is scored by re-reading just the n-grams touching them.
+ *  @author Andrew Tom
+ */
+final class PlugSolver {
+
+    /** The outcome of a solve. */
+    static final class Result {
+
+        /** A result with plugboard PLUGBOARD (cycle notation), full
+         *  setting line SETTING, decryption PLAINTEXT and trigram score
+         *  SCORE. */
+        Result(String plugboard, String setting, String plaintext,
+               double score) {
+            _plugboard = plugboard;
+            _setting = setting;
+            _plaintext = plaintext;
+            _score = score;
+        }
+
+        /** Return the plugboard, in cycle notation. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return the setting line with the plugboard found. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the ciphertext decrypted with setting(). */
+        String plaintext() {
+            return _plaintext;
+        }
+
+        /** Return the trigram log probability of plaintext(). */
+        double score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f %s", _score, _setting);
+        }
+
+        /** Plugboard found. */
+        private final String _plugboard;
+        /** Setting line. */
+        private final String _setting;
+        /** Decryption. */
+        private final String _plaintext;
+        /** Trigram log probability. */
+        private final double _score;
+    }
+
+    /** A solver for the plugboard of CIPHERTEXT (whitespace ignored),
+     *  encrypted with SPEC at the setting line SETTING, whose own
+     *  plugboard, if any, is ignored.  At most MAXPAIRS pairs are
+     *  plugged, and candidates are scored with NGRAMS. */
+    PlugSolver(MachineSpec spec, String setting, String ciphertext,
+               NGrams ngrams, int maxPairs) {
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        if (ngrams.alphabet().size() != _size) {
+            throw EnigmaException.error("n-grams are for another alphabet");
+        }
+        if (maxPairs < 0 || 2 * maxPairs > _size) {
+            throw EnigmaException.error("bad number of plug pairs");
+        }
+        _ngrams = ngrams;
+        _maxPairs = maxPairs;
+        int plugs = setting.indexOf('(');
+        _rotorSetting = (plugs < 0 ? setting : setting.substring(0, plugs))
+            .trim();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ciphertext.length(); i += 1) {
+            char c = ciphertext.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                text.append(c);
+            }
+        }
+        _length = text.length();
+        if (_length < 3) {
+            throw EnigmaException.error("ciphertext too short");
+        }
+        _cipher = new int[_length];
+        int[] count = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            _cipher[i] = _alphabet.toInt(text.charAt(i));
+            count[_cipher[i]] += 1;
+        }
+        _byCipher = new int[_size][];
+        for (int c = 0; c < _size; c += 1) {
+            _byCipher[c] = new int[count[c]];
+            count[c] = 0;
+        }
+        for (int i = 0; i < _length; i += 1) {
+            _byCipher[_cipher[i]][count[_cipher[i]]++] = i;
+        }
+
+        MachineSpec.Setting parsed = spec.parse(_rotorSetting);
+        int slots = spec.numRotors();
+        RotorSpec[] rotors = new RotorSpec[slots];
+        int[] positions = new int[slots];
+        int[] rings = new int[slots];
+        for (int x = 0; x < slots; x += 1) {
+            rotors[x] = parsed.slot(x);
+            positions[x] = parsed.position(x);
+            rings[x] = parsed.ring(x);
+        }
+        MachineState state =
+            new MachineState(spec, rotors, positions, rings,
+                             new Permutation("", _alphabet));
+        _scrambler = new int[_length * _size];
+        for (int i = 0; i < _length; i += 1) {
+            state.advance();
+            for (int c = 0; c < _size; c += 1) {
+                _scrambler[i * _size + c] = state.route(c);
+            }
+        }
+    }
+
+    /** Return the best of RESTARTS climbs run in POOL. */
+    Result solve(int restarts, ForkJoinPool pool) {
+        if (restarts < 1) {
+            throw EnigmaException.error("need at least one restart");
+        }
+        return pool.invoke(new Restarts(0, restarts)).result();
+    }
+
+    /** Return the best of RESTARTS climbs run in the common pool. */
+    Result solve(int restarts) {
+        return solve(restarts, ForkJoinPool.commonPool());
+    }
+
+    /** Runs climbs [lo, hi) and returns the best. */
+    private class Restarts extends RecursiveTask<Climber> {
+
+        /** Run climbs LO to HI - 1. */
+        Restarts(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected Climber compute() {
+            if (_hi - _lo == 1) {
+                Climber climber = new Climber(_lo);
+                climber.climb();
+                return climber;
+            }
+            int mid = (_lo + _hi) >>> 1;
+            Restarts right = new Restarts(mid, _hi);
+            right.fork();
+            Climber a = new Restarts(_lo, mid).compute();
+            Climber b = right.join();
+            return b._score > a._score ? b : a;
+        }
+
+        /** First climb. */
+        private final int _lo;
+        /** Climb past the last. */
+        private final int _hi;
+    }
+
+    /** One hill climb, holding its plugboard and the decryption it
+     *  gives. */
+    private class Climber {
+
+        /** Climb number RESTART: climb 0 starts from an empty plugboard
+         *  and the others from random ones seeded by RESTART. */
+        Climber(int restart) {
+            for (int c = 0; c < _size; c += 1) {
+                _plug[c] = c;
+            }
+            if (restart > 0) {
+                Random random = new Random(restart);
+                for (int k = 0; k < _maxPairs; k += 1) {
+                    int a = random.nextInt(_size), b = random.nextInt(_size);
+                    if (a != b && _plug[a] == a && _plug[b] == b) {
+                        _plug[a] = b;
+                        _plug[b] = a;
+                        _pairs += 1;
+                    }
+                }
+            }
+            for (int i = 0; i < _length; i += 1) {
+                _mid[i] = _scrambler[i * _size + _plug[_cipher[i]]];
+                _byMid[_mid[i]][i >> 6] |= 1L << i;
+                _plain[i] = _plug[_mid[i]];
+            }
+        }
+
+        /** Climb with bigrams and then with trigrams. */
+        void climb() {
+            climb(2);
+            climb(3);
+        }
+
+        /** Make improving moves, scoring with N-grams, until none is
+         *  left. */
+        private void climb(int n) {
+            _n = n;
+            _score = _ngrams.score(_plain, _length, n);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < _size; a += 1) {
+                    for (int b = a + 1; b < _size; b += 1) {
+                        if (tryMove(a, b)) {
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Unplug A and B if they are plugged together, and otherwise
+         *  plug them together, unplugging their partners.  Keep the move
+         *  and return true iff it raises the score. */
+        private boolean tryMove(int a, int b) {
+            int pa = _plug[a], pb = _plug[b];
+            int pairs;
+            if (pa == b) {
+                _letters[0] = a;
+                _values[0] = a;
+                _letters[1] = b;
+                _values[1] = b;
+                _changes = 2;
+                pairs = _pairs - 1;
+            } else {
+                pairs = _pairs + 1 - (pa != a ? 1 : 0) - (pb != b ? 1 : 0);
+                if (pairs > _maxPairs) {
+                    return false;
+                }
+                _changes = 0;
+                change(a, b);
+                change(b, a);
+                if (pa != a) {
+                    change(pa, pa);
+                }
+                if (pb != b) {
+                    change(pb, pb);
+                }
+            }
+            for (int k = 0; k < _changes; k += 1) {
+                _undo[k] = _plug[_letters[k]];
+            }
+            double delta = apply(_values);
+            if (delta > EPSILON) {
+                _score += delta;
+                _pairs = pairs;
+                return true;
+            }
+            apply(_undo);
+            return false;
+        }
+
+        /** Note that letter C is to be plugged to D. */
+        private void change(int c, int d) {
+            _letters[_changes] = c;
+            _values[_changes] = d;
+            _changes += 1;
+        }
+
+        /** Plug each of the _changes letters in _letters to the letter at
+         *  the same index in VALUES, bring _mid and _plain up to date, and
+         *  return the change in score. */
+        private double apply(int[] values) {
+            int size = _size;
+            _stamp += 1;
+            int touched = 0;
+            for (int k = 0; k < _changes; k += 1) {
+                _plug[_letters[k]] = values[k];
+            }
+            for (int k = 0; k < _changes; k += 1) {
+                for (int i : _byCipher[_letters[k]]) {
+                    int mid = _scrambler[i * size + _plug[_cipher[i]]];
+                    if (mid != _mid[i]) {
+                        _byMid[_mid[i]][i >> 6] &= ~(1L << i);
+                        _byMid[mid][i >> 6] |= 1L << i;
+                        _mid[i] = mid;
+                    }
+                    if (_seen[i] != _stamp) {
+                        _seen[i] = _stamp;
+                        _touched[touched++] = i;
+                    }
+                }
+            }
+            for (int k = 0; k < _changes; k += 1) {
+                long[] bits = _byMid[_letters[k]];
+                for (int w = 0; w < bits.length; w += 1) {
+                    for (long m = bits[w]; m != 0; m &= m - 1) {
+                        int i = (w << 6) + Long.numberOfTrailingZeros(m);
+                        if (_seen[i] != _stamp) {
+                            _seen[i] = _stamp;
+                            _touched[touched++] = i;
+                        }
+                    }
+                }
+            }
+
+            int grams = 0;
+            int last = _length - _n;
+            for (int t = 0; t < touched; t += 1) {
+                int i = _touched[t];
+                for (int j = Math.max(i - _n + 1, 0); j <= i && j <= last;
+                     j += 1) {
+                    if (_gramSeen[j] != _stamp) {
+                        _gramSeen[j] = _stamp;
+                        _grams[grams++] = j;
+                    }
+                }
+            }
+            double delta = -gramSum(grams);
+            for (int t = 0; t < touched; t += 1) {
+                int i = _touched[t];
+                _plain[i] = _plug[_mid[i]];
+            }
+            return delta + gramSum(grams);
+        }
+
+        /** Return the total score of the first COUNT n-grams listed in
+         *  _grams. */
+        private double gramSum(int count) {
+            double sum = 0;
+            int size = _size;
+            if (_n == 2) {
+                float[] table = _ngrams.bigrams();
+                for (int g = 0; g < count; g += 1) {
+                    int j = _grams[g];
+                    sum += table[_plain[j] * size + _plain[j + 1]];
+                }
+            } else {
+                float[] table = _ngrams.trigrams();
+                for (int g = 0; g < count; g += 1) {
+                    int j = _grams[g];
+                    sum += table[(_plain[j] * size + _plain[j + 1]) * size
+                                 + _plain[j + 2]];
+                }
+            }
+            return sum;
+        }
+
+        /** Return my plugboard, decryption and score as a Result. */
+        Result result() {
+            StringBuilder plugs = new StringBuilder();
+            for (int c = 0; c < _size; c += 1) {
+                if (c < _plug[c]) {
+                    plugs.append(plugs.length() == 0 ? "(" : " (")
+                        .append(_alphabet.toChar(c))
+                        .append(_alphabet.toChar(_plug[c])).append(')');
+                }
+            }
+            char[] plain = new char[_length];
+            for (int i = 0; i < _length; i += 1) {
+                plain[i] = _alphabet.toChar(_plain[i]);
+            }
+            String setting = plugs.length() == 0 ? _rotorSetting
+                : _rotorSetting + " " + plugs;
+            return new Result(plugs.toString(), setting, new String(plain),
+                              _ngrams.score(_plain, _length, 3));
+        }
+
+        /** Plugboard: letter c is plugged to _plug[c]. */
+        private final int[] _plug = new int[_size];
+        /** Number of pairs plugged. */
+        private int _pairs;
+        /** _mid[i] is the scrambler output at position i. */
+        private final int[] _mid = new int[_length];
+        /** Bit i of _byMid[c] is set iff _mid[i] is c. */
+        private final long[][] _byMid = new long[_size][(_length + 63) >> 6];
+        /** Current decryption. */
+        private final int[] _plain = new int[_length];
+        /** N-gram length being scored. */
+        private int _n = 3;
+        /** Score of _plain with _n-grams. */
+        private double _score;
+        /** Letters whose partners the current move changes. */
+        private final int[] _letters = new int[4];
+        /** New partners of _letters. */
+        private final int[] _values = new int[4];
+        /** Old partners of _letters. */
+        private final int[] _undo = new int[4];
+        /** Number of letters changed. */
+        private int _changes;
+        /** Current value of the marks in _seen and _gramSeen. */
+        private int _stamp;
+        /** _seen[i] is _stamp iff position i has been touched. */
+        private final int[] _seen = new int[_length];
+        /** Positions touched by the current move. */
+        private final int[] _touched = new int[_length];
+        /** _gramSeen[j] is _stamp iff the n-gram at j is in _grams. */
+        private final int[] _gramSeen = new int[_length];
+        /** Starts of the n-grams touched by the current move. */
+        private final int[] _grams = new int[_length];
+    }
+
+    /** Smallest score gain counted as an improvement. */
+    private static final double EPSILON = 1e-6;
+
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Scoring tables. */
+    private final NGrams _ngrams;
+    /** Most pairs plugged. */
+    private final int _maxPairs;
+    /** Setting line without plugboard. */
+    private final String _rotorSetting;
+    /** Ciphertext length. */
+    private final int _length;
+    /** Ciphertext as alphabet indices. */
+    private final int[] _cipher;
+    /** _byCipher[c] lists the positions whose ciphertext is c. */
+    private final int[][] _byCipher;
+    /** Position i sends c through the rotors to _scrambler[i * size +
+     *  c]. */
+    private final int[] _scrambler;
+}
@@ -0,0 +1,86 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.KeySearchTest.PLAIN;
+import static enigma.KeySearchTest.smallSpec;
+
+/** The suite of all JUnit tests for the PlugSolver class.
+ *  @author Andrew Tom
+ */
+public class PlugSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** English sample for the n-gram tables. */
+    static final String CORPUS =
+        "It was the best of times, it was the worst of times, it was the "
+        + "age of wisdom, it was the age of foolishness, it was the epoch "
+        + "of belief, it was the epoch of incredulity, it was the season of "
+        + "Light, it was the season of Darkness, it was the spring of hope, "
+        + "it was the winter of despair, we had everything before us, we "
+        + "had nothing before us, we were all going direct to Heaven, we "
+        + "were all going direct the other way. In short, the period was so "
+        + "far like the present period, that some of its noisiest "
+        + "authorities insisted on its being received, for good or for "
+        + "evil, in the superlative degree of comparison only. There were "
+        + "a king with a large jaw and a queen with a plain face, on the "
+        + "throne of England; there were a king with a large jaw and a "
+        + "queen with a fair face, on the throne of France. In both "
+        + "countries it was clearer than crystal to the lords of the State "
+        + "preserves of loaves and fishes, that things in general were "
+        + "settled for ever. It was the year of Our Lord one thousand seven "
+        + "hundred and seventy-five. Spiritual revelations were conceded to "
+        + "England at that favoured period, as at this.";
+
+    /** Plugboard used to encrypt the test message. */
+    static final String PLUGS = "(AT) (BL) (EZ) (HW) (OS) (QR)";
+
+    @Test
+    public void recoversPlugboard() {
+        MachineSpec spec = smallSpec();
+        String setting = "* B III I KQ";
+        String cipher = spec.newMachine(setting + " " + PLUGS).convert(PLAIN);
+        PlugSolver solver = new PlugSolver(spec, setting, cipher,
+            new NGrams(new Alphabet(), CORPUS), 6);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PlugSolver.Result result;
+        try {
+            result = solver.solve(4, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(PLUGS, result.plugboard());
+        assertEquals(setting + " " + PLUGS, result.setting());
+        assertEquals(PLAIN, result.plaintext());
+        assertEquals(spec.newMachine(result.setting()).convert(cipher),
+                     result.plaintext());
+    }
+
+    @Test
+    public void noPlugs() {
+        MachineSpec spec = smallSpec();
+        String setting = "* B II III CX AF";
+        String cipher = spec.newMachine(setting).convert(PLAIN);
+        PlugSolver solver = new PlugSolver(spec, setting + " (AB)", cipher,
+            new NGrams(new Alphabet(), CORPUS), 0);
+        PlugSolver.Result result = solver.solve(1);
+        assertEquals("", result.plugboard());
+        assertEquals(setting, result.setting());
+        assertEquals(PLAIN, result.plaintext());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void tooManyPairs() {
+        new PlugSolver(smallSpec(), "* B II III AA", PLAIN,
+                       new NGrams(new Alphabet(), CORPUS), 14);
+    }
+
+}
@@ -0,0 +1,105 @@
+package enigma;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** The frames spoken between EnigmaServer and EnigmaClient.  Every
+ *  frame is an int length, counting the bytes after it, followed by the
+ *  body.  All numbers are big-endian and all text is UTF-8.
+ *
+ *  A request body is
+ *  <pre>
+ *     byte type, int request id, int session id, byte[] payload,
+ *  </pre>
+ *  where the type is OPEN (payload: config id, newline, setting line),
+ *  CONVERT (payload: text to convert) or CLOSE (no payload).  Session
+ *  ids are chosen by the client, so a client may send an OPEN and the
+ *  CONVERTs that use it without waiting for replies.  A reply body is
+ *  <pre>
+ *     byte status, int request id, byte[] payload,
+ *  </pre>
+ *  where the status is OK (payload: the converted text, or empty) or
+ *  ERROR (payload: the message).  Requests for one session are
+ *  carried out in the order sent; replies for different sessions may
+ *  arrive in any order and are matched up by request id.
+ *  @author Andrew Tom
+ */
+final class Protocol {
+
+    /** Request types. */
+    static final byte OPEN = 1, CONVERT = 2, CLOSE = 3;
+
+    /** Reply statuses. */
+    static final byte OK = 0, ERROR = 1;
+
+    /** Bytes of a request body before its payload. */
+    static final int REQUEST_HEADER = 1 + 2 * Integer.BYTES;
+
+    /** Bytes of a reply body before its payload. */
+    static final int REPLY_HEADER = 1 + Integer.BYTES;
+
+    /** Largest frame body accepted. */
+    static final int MAX_FRAME = 1 << 20;
+
+    /** Prefix of an address naming a Unix-domain socket. */
+    static final String UNIX_PREFIX = "unix:";
+
+    /** Not instantiable. */
+    private Protocol() {
+    }
+
+    /** Return a request frame of type TYPE numbered REQUEST for session
+     *  SESSION carrying PAYLOAD, ready to write. */
+    static ByteBuffer request(byte type, int request, int session,
+                              String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + REQUEST_HEADER
+                                               + bytes.length);
+        frame.putInt(REQUEST_HEADER + bytes.length).put(type)
+            .putInt(request).putInt(session).put(bytes).flip();
+        return frame;
+    }
+
+    /** Return a reply frame with status STATUS to request REQUEST
+     *  carrying PAYLOAD, ready to write. */
+    static ByteBuffer reply(byte status, int request, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + REPLY_HEADER
+                                               + bytes.length);
+        frame.putInt(REPLY_HEADER + bytes.length).put(status)
+            .putInt(request).put(bytes).flip();
+        return frame;
+    }
+
+    /** Return the next LEN bytes of BUF decoded as UTF-8. */
+    static String text(ByteBuffer buf, int len) {
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Return the address named by NAME: "unix:PATH" for a Unix-domain
+     *  socket, "HOST:PORT" for TCP, or just "PORT" for TCP on the
+     *  loopback interface. */
+    static SocketAddress address(String name) {
+        if (name.startsWith(UNIX_PREFIX)) {
+            return UnixDomainSocketAddress.of(
+                name.substring(UNIX_PREFIX.length()));
+        }
+        int colon = name.lastIndexOf(':');
+        try {
+            int port = Integer.parseInt(name.substring(colon + 1));
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             port);
+            }
+            return new InetSocketAddress(name.substring(0, colon), port);
+        } catch (IllegalArgumentException excp) {
+            throw EnigmaException.error("bad address: %s", name);
+        }
+    }
+}
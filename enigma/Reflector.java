@@ -25,6 +25,13 @@ class Reflector extends FixedRotor {
         }
     }
 
+    @Override
+    Rotor copy() {
+        Reflector result = new Reflector(name(), permutation());
+        result.copyState(this);
+        return result;
+    }
+
     @Override
     boolean reflecting() {
         return true;
@@ -6,6 +6,10 @@ package enigma;
  */
 class Rotor {
 
+    /** Largest size()*size() for which shifted wiring tables are built;
+     *  bigger alphabets convert arithmetically. */
+    static final int SHIFT_TABLE_LIMIT = 1 << 14;
+
     /** A rotor named NAME whose permutation is given by PERM. */
     Rotor(String name, Permutation perm) {
         _name = name;
@@ -53,6 +57,7 @@ class Rotor {
      * */
     public void ringSetter(int p) {
         _ringSetting = p;
+        updateOffset();
     }
 
     /** Ringsetting getter method.
@@ -66,16 +71,79 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
+        updateOffset();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        _setting = alphabet().toInt(cposn);
+        set(alphabet().toInt(cposn));
+    }
+
+    /** Recompute the effective offset, setting() - ringSetting(). */
+    private void updateOffset() {
+        if (size() > 0) {
+            _offset = permutation().wrap(_setting - _ringSetting);
+        }
+    }
+
+    /** Build the shifted wiring tables, if the alphabet is small
+     *  enough.  Row o of each table is the wiring seen at effective
+     *  offset o. */
+    private void compileShifted() {
+        int n = size();
+        if (n > 0 && n * n <= SHIFT_TABLE_LIMIT) {
+            Permutation perm = permutation();
+            int[] fwd = new int[n * n];
+            int[] bwd = new int[n * n];
+            for (int o = 0; o < n; o += 1) {
+                for (int p = 0; p < n; p += 1) {
+                    int in = p + o < n ? p + o : p + o - n;
+                    int f = perm.permute(in) - o;
+                    int b = perm.invert(in) - o;
+                    fwd[o * n + p] = f < 0 ? f + n : f;
+                    bwd[o * n + p] = b < 0 ? b + n : b;
+                }
+            }
+            _shiftedBackward = bwd;
+            _shiftedForward = fwd;
+        }
+        _compiled = true;
+    }
+
+    /** Shifted forward wiring, or null if the alphabet is too large.
+     * @return flattened size() x size() table
+     * */
+    int[] shiftedForward() {
+        if (!_compiled) {
+            compileShifted();
+        }
+        return _shiftedForward;
+    }
+
+    /** Shifted inverse wiring, or null if the alphabet is too large.
+     * @return flattened size() x size() table
+     * */
+    int[] shiftedBackward() {
+        if (!_compiled) {
+            compileShifted();
+        }
+        return _shiftedBackward;
+    }
+
+    /** Effective offset setting() - ringSetting(), modulo size().
+     * @return the offset
+     * */
+    int offset() {
+        return _offset;
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
+        int[] table = shiftedForward();
+        if (table != null && p >= 0 && p < size()) {
+            return table[_offset * size() + p];
+        }
         int firstContact = permutation().wrap(p + setting() - ringSetting());
         int permuted = permutation().permute(firstContact);
         int hoof = permuted - setting() + ringSetting();
@@ -86,6 +154,10 @@ class Rotor {
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
+        int[] table = shiftedBackward();
+        if (table != null && e >= 0 && e < size()) {
+            return table[_offset * size() + e];
+        }
         int firstContact = permutation().wrap(e + setting() - ringSetting());
         int permuted = permutation().invert(firstContact);
         int hoof = permuted - setting() + ringSetting();
@@ -93,6 +165,25 @@ class Rotor {
         return secondContact;
     }
 
+    /** Return a new rotor of my kind with my name, wiring, setting and
+     *  ring setting, sharing my permutation and compiled tables. */
+    Rotor copy() {
+        Rotor result = new Rotor(name(), permutation());
+        result.copyState(this);
+        return result;
+    }
+
+    /** Take the setting, ring setting and compiled tables of OTHER,
+     *  which must have the same permutation. */
+    void copyState(Rotor other) {
+        _setting = other._setting;
+        _ringSetting = other._ringSetting;
+        _offset = other._offset;
+        _compiled = other._compiled;
+        _shiftedForward = other._shiftedForward;
+        _shiftedBackward = other._shiftedBackward;
+    }
+
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
@@ -120,5 +211,17 @@ class Rotor {
     /** rsetting.*/
     private int _ringSetting;
 
+    /** Effective offset, kept in step with _setting and _ringSetting. */
+    private int _offset;
+
+    /** True once compileShifted() has run. */
+    private boolean _compiled;
+
+    /** Flattened forward wiring per offset, or null. */
+    private int[] _shiftedForward;
+
+    /** Flattened inverse wiring per offset, or null. */
+    private int[] _shiftedBackward;
+
 
 }
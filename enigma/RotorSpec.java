@@ -0,0 +1,142 @@
+package enigma;
+
+/** The immutable, compiled description of one rotor in a configuration:
+ *  its name, kind, wiring, notches, shifted wiring tables and notch
+ *  table.  A RotorSpec may be shared freely between threads; each
+ *  machine that uses it gets its own Rotor from newRotor(), or reads the
+ *  tables directly through a MachineState.
+ *  @author Andrew Tom
+ */
+final class RotorSpec {
+
+    /** A spec describing PROTOTYPE in its 0 setting.  PROTOTYPE itself is
+     *  not retained. */
+    RotorSpec(Rotor prototype) {
+        Rotor proto = prototype.copy();
+        proto.ringSetter(0);
+        if (!proto.reflecting()) {
+            proto.set(0);
+        }
+        _prototype = proto;
+        _size = proto.size();
+        _forward = proto.shiftedForward();
+        _backward = proto.shiftedBackward();
+        _notchAt = new boolean[_size];
+        if (proto.rotates()) {
+            MovingRotor moving = (MovingRotor) proto;
+            for (int s = 0; s < _size; s += 1) {
+                _notchAt[s] = moving.isNotch(s);
+            }
+        }
+    }
+
+    /** Return a new Rotor in its 0 setting with my wiring, sharing my
+     *  compiled tables. */
+    Rotor newRotor() {
+        return _prototype.copy();
+    }
+
+    /** Return my name. */
+    String name() {
+        return _prototype.name();
+    }
+
+    /** Return my wiring in its 0 position. */
+    Permutation permutation() {
+        return _prototype.permutation();
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _prototype.alphabet();
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff I have a ratchet and can move. */
+    boolean rotates() {
+        return _prototype.rotates();
+    }
+
+    /** Return true iff I reflect. */
+    boolean reflecting() {
+        return _prototype.reflecting();
+    }
+
+    /** Return my notch letters ("" unless I rotate). */
+    String notches() {
+        if (rotates()) {
+            return ((MovingRotor) _prototype).notches();
+        }
+        return "";
+    }
+
+    /** Return true iff SETTING is one of my notches. */
+    boolean atNotch(int setting) {
+        return _notchAt[setting];
+    }
+
+    /** Return the number of advances from SETTING until I am at a notch
+     *  (0 if SETTING is one), or -1 if I have no notches. */
+    int notchDistance(int setting) {
+        if (rotates()) {
+            return ((MovingRotor) _prototype).notchDistance(setting);
+        }
+        return -1;
+    }
+
+    /** Return the conversion of P (0 <= P < size()) at effective
+     *  OFFSET (setting minus ring setting, modulo size()). */
+    int forward(int offset, int p) {
+        if (_forward != null) {
+            return _forward[offset * _size + p];
+        }
+        Permutation perm = permutation();
+        return perm.wrap(perm.permute(perm.wrap(p + offset)) - offset);
+    }
+
+    /** Return the inverse conversion of E (0 <= E < size()) at
+     *  effective OFFSET. */
+    int backward(int offset, int e) {
+        if (_backward != null) {
+            return _backward[offset * _size + e];
+        }
+        Permutation perm = permutation();
+        return perm.wrap(perm.invert(perm.wrap(e + offset)) - offset);
+    }
+
+    /** Return the flattened size() x size() forward table, or null for
+     *  large alphabets.  Callers must not modify it. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return the flattened size() x size() inverse table, or null for
+     *  large alphabets.  Callers must not modify it. */
+    int[] backwardTable() {
+        return _backward;
+    }
+
+    @Override
+    public String toString() {
+        return "RotorSpec " + name();
+    }
+
+    /** Private rotor in its 0 setting that newRotor() copies. */
+    private final Rotor _prototype;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** Shifted forward wiring, or null. */
+    private final int[] _forward;
+
+    /** Shifted inverse wiring, or null. */
+    private final int[] _backward;
+
+    /** _notchAt[s] is true iff setting s is a notch. */
+    private final boolean[] _notchAt;
+}
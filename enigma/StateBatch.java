@@ -0,0 +1,323 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** Many machine states over one MachineSpec, stepped and converted
+ *  together.  The states ("lanes") are kept as struct-of-arrays: for
+ *  each slot, an int[] of positions and an int[] of wiring offsets
+ *  indexed by lane, and for each slot and lane the base of that lane's
+ *  rotor in one table holding the shifted wiring of the whole rotor
+ *  library.  Each character of a message is run through every lane
+ *  slot by slot, so the inner loops are straight runs of gathers over
+ *  shared tables with no per-lane objects or calls.  When the JVM runs
+ *  with --add-modules jdk.incubator.vector, those loops go through
+ *  StateBatchVectors, which gathers a vector of lanes at a time; without
+ *  the module, or with -Denigma.vector=false, the scalar loops run.
+ *
+ *  Lanes may hold different rotors, positions, rings and plugboards,
+ *  but all follow the spec's layout (a reflector, then fixed rotors,
+ *  then numPawls() moving rotors), as checked by MachineSpec.parse().
+ *  Each lane converts exactly as a Machine set up the same way would.
+ *  A StateBatch is not thread-safe; use one per thread.
+ *  @author Andrew Tom
+ */
+final class StateBatch {
+
+    /** True iff the Vector API is available and not disabled. */
+    static final boolean VECTOR =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+        && !"false".equals(System.getProperty("enigma.vector"));
+
+    /** A batch of LANES states for SPEC, all initially unset. */
+    StateBatch(MachineSpec spec, int lanes) {
+        this(spec, lanes, VECTOR);
+    }
+
+    /** A batch of LANES states for SPEC, all initially unset, using the
+     *  Vector API iff VECTOR and it is available. */
+    StateBatch(MachineSpec spec, int lanes, boolean vector) {
+        _vector = vector && VECTOR;
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _size = _alphabet.size();
+        _lanes = lanes;
+        _numRotors = spec.numRotors();
+        _firstMoving = _numRotors - spec.numPawls();
+        _library = spec.rotors().values().toArray(new RotorSpec[0]);
+
+        boolean shifted = true;
+        for (RotorSpec r : _library) {
+            shifted &= r.forwardTable() != null;
+        }
+        _shifted = shifted;
+        int stride = shifted ? _size * _size : _size;
+        _forward = new int[_library.length * stride];
+        _backward = new int[_library.length * stride];
+        _notch = new boolean[_library.length * _size];
+        for (int r = 0; r < _library.length; r += 1) {
+            RotorSpec rotor = _library[r];
+            System.arraycopy(shifted ? rotor.forwardTable()
+                             : rotor.permutation().forwardTable(),
+                             0, _forward, r * stride, stride);
+            System.arraycopy(shifted ? rotor.backwardTable()
+                             : rotor.permutation().backwardTable(),
+                             0, _backward, r * stride, stride);
+            for (int s = 0; s < _size; s += 1) {
+                _notch[r * _size + s] = rotor.atNotch(s);
+            }
+        }
+        _stride = stride;
+
+        _base = new int[_numRotors][lanes];
+        _notchBase = new int[_numRotors][lanes];
+        _positions = new int[_numRotors][lanes];
+        _offsets = new int[_numRotors][lanes];
+        _plug = new int[lanes * _size];
+        _chars = new int[lanes];
+        _index = _vector ? new int[lanes] : null;
+        _carry = new boolean[lanes];
+    }
+
+    /** A batch with one lane for each of the setting lines SETTINGS. */
+    StateBatch(MachineSpec spec, String... settings) {
+        this(spec, settings.length);
+        for (int l = 0; l < settings.length; l += 1) {
+            set(l, spec.parse(settings[l]));
+        }
+    }
+
+    /** Return the number of lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Return the spec I was built from. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the rotor library, in spec order; set() takes indices into
+     *  it.  Callers must not modify it. */
+    RotorSpec[] library() {
+        return _library;
+    }
+
+    /** Put LANE into the state described by SETTING. */
+    void set(int lane, MachineSpec.Setting setting) {
+        int[] rotors = new int[_numRotors];
+        int[] positions = new int[_numRotors];
+        int[] rings = new int[_numRotors];
+        for (int x = 0; x < _numRotors; x += 1) {
+            rotors[x] = Arrays.asList(_library).indexOf(setting.slot(x));
+            positions[x] = setting.position(x);
+            rings[x] = setting.ring(x);
+        }
+        set(lane, rotors, positions, rings,
+            setting.plugboard().forwardTable());
+    }
+
+    /** Put LANE into the state with rotor library()[ROTORS[x]] in slot x
+     *  at position POSITIONS[x] with ring setting RINGS[x], and with
+     *  plugboard PLUG (a forward table, applied on entry and exit).  The
+     *  rotors must fit the spec's layout; this is not checked. */
+    void set(int lane, int[] rotors, int[] positions, int[] rings,
+             int[] plug) {
+        for (int x = 0; x < _numRotors; x += 1) {
+            int r = rotors[x];
+            _base[x][lane] = r * _stride;
+            _notchBase[x][lane] = r * _size;
+            _positions[x][lane] = positions[x];
+            _offsets[x][lane] = Math.floorMod(positions[x] - rings[x], _size);
+        }
+        System.arraycopy(plug, 0, _plug, lane * _size, _size);
+    }
+
+    /** Return the current position of slot X in LANE. */
+    int position(int lane, int x) {
+        return _positions[x][lane];
+    }
+
+    /** Advance the rotors of every lane one step, including the double
+     *  step, exactly as Machine.advanceMachine() does. */
+    void advance() {
+        advance(_lanes);
+    }
+
+    /** Advance lanes 0 .. LANES-1 as advance() does. */
+    private void advance(int lanes) {
+        int last = _numRotors - 1;
+        int size = _size;
+        boolean[] carry = _carry;
+        for (int x = last; x >= _firstMoving; x -= 1) {
+            int[] pos = _positions[x];
+            int[] off = _offsets[x];
+            int[] nb = _notchBase[x];
+            boolean fast = x == last;
+            boolean doubleStep = x > _firstMoving;
+            for (int l = 0; l < lanes; l += 1) {
+                boolean here = _notch[nb[l] + pos[l]];
+                if (fast || carry[l] || (doubleStep && here)) {
+                    pos[l] = pos[l] + 1 == size ? 0 : pos[l] + 1;
+                    off[l] = off[l] + 1 == size ? 0 : off[l] + 1;
+                }
+                carry[l] = here;
+            }
+        }
+    }
+
+    /** Advance every lane and convert the alphabet index C in each,
+     *  leaving the results in chars(). */
+    void convert(int c) {
+        convert(c, _lanes);
+    }
+
+    /** Advance lanes 0 .. LANES-1 and convert C in each, as
+     *  convert(int) does. */
+    private void convert(int c, int lanes) {
+        advance(lanes);
+        int size = _size;
+        int[] chars = _chars;
+        for (int l = 0; l < lanes; l += 1) {
+            chars[l] = _plug[l * size + c];
+        }
+        for (int x = _numRotors - 1; x >= 0; x -= 1) {
+            route(_forward, x, chars, lanes);
+        }
+        for (int x = 1; x < _numRotors; x += 1) {
+            route(_backward, x, chars, lanes);
+        }
+        for (int l = 0; l < lanes; l += 1) {
+            chars[l] = _plug[l * size + chars[l]];
+        }
+    }
+
+    /** Replace the value of each of lanes 0 .. LANES-1 in CHARS by its
+     *  conversion through slot X using the wiring TABLES (_forward or
+     *  _backward). */
+    private void route(int[] tables, int x, int[] chars, int lanes) {
+        int[] base = _base[x];
+        int[] off = _offsets[x];
+        int size = _size;
+        if (_shifted) {
+            int done = !_vector ? 0 : StateBatchVectors.routeShifted(
+                tables, base, off, size, chars, _index, lanes);
+            for (int l = done; l < lanes; l += 1) {
+                chars[l] = tables[base[l] + off[l] * size + chars[l]];
+            }
+        } else {
+            int done = !_vector ? 0 : StateBatchVectors.routeUnshifted(
+                tables, base, off, size, chars, _index, lanes);
+            for (int l = done; l < lanes; l += 1) {
+                int p = chars[l] + off[l];
+                p = tables[base[l] + (p >= size ? p - size : p)] - off[l];
+                chars[l] = p < 0 ? p + size : p;
+            }
+        }
+    }
+
+    /** Return the per-lane results of the last convert(int).  Callers
+     *  must not modify it. */
+    int[] chars() {
+        return _chars;
+    }
+
+    /** Convert the LEN alphabet indices IN[0..LEN) in every lane.  If OUT
+     *  is not null, lane l's result for IN[i] goes to OUT[l * LEN + i].
+     *  If COUNTS is not null, COUNTS[l * alphabet size + c] is increased
+     *  by the number of times lane l produced c. */
+    void convert(int[] in, int len, int[] out, int[] counts) {
+        convert(in, len, out, counts, _lanes);
+    }
+
+    /** As convert(IN, LEN, OUT, COUNTS), but only in lanes 0 .. LANES-1;
+     *  the other lanes neither step nor produce results. */
+    void convert(int[] in, int len, int[] out, int[] counts, int lanes) {
+        int size = _size;
+        for (int i = 0; i < len; i += 1) {
+            convert(in[i], lanes);
+            int[] chars = _chars;
+            if (out != null) {
+                for (int l = 0; l < lanes; l += 1) {
+                    out[l * len + i] = chars[l];
+                }
+            }
+            if (counts != null) {
+                for (int l = 0; l < lanes; l += 1) {
+                    counts[l * size + chars[l]] += 1;
+                }
+            }
+        }
+    }
+
+    /** Return MSG as converted by each lane. */
+    String[] convert(String msg) {
+        int len = msg.length();
+        int[] in = new int[len];
+        for (int i = 0; i < len; i += 1) {
+            in[i] = _alphabet.indexOf(msg.charAt(i));
+            if (in[i] < 0) {
+                throw EnigmaException.error(
+                    "character %c not in alphabet", msg.charAt(i));
+            }
+        }
+        int[] out = new int[_lanes * len];
+        convert(in, len, out, null);
+        String[] result = new String[_lanes];
+        char[] chars = new char[len];
+        for (int l = 0; l < _lanes; l += 1) {
+            for (int i = 0; i < len; i += 1) {
+                chars[i] = _alphabet.toChar(out[l * len + i]);
+            }
+            result[l] = new String(chars);
+        }
+        return result;
+    }
+
+    /** Spec I was built from. */
+    private final MachineSpec _spec;
+    /** Common alphabet. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of lanes. */
+    private final int _lanes;
+    /** Number of slots. */
+    private final int _numRotors;
+    /** First slot holding a moving rotor. */
+    private final int _firstMoving;
+    /** Rotor library in spec order. */
+    private final RotorSpec[] _library;
+    /** True iff _forward and _backward hold size x size shifted tables
+     *  per rotor; otherwise they hold the unshifted wiring, and the
+     *  offset is applied arithmetically. */
+    private final boolean _shifted;
+    /** Length of one rotor's part of _forward and _backward. */
+    private final int _stride;
+    /** Forward wiring of every library rotor, one after another. */
+    private final int[] _forward;
+    /** Inverse wiring of every library rotor, one after another. */
+    private final int[] _backward;
+    /** Notch table of every library rotor, size entries each. */
+    private final boolean[] _notch;
+    /** _base[x][l] is where lane l's slot x rotor starts in _forward and
+     *  _backward. */
+    private final int[][] _base;
+    /** _notchBase[x][l] is where lane l's slot x rotor starts in
+     *  _notch. */
+    private final int[][] _notchBase;
+    /** _positions[x][l] is the position of slot x in lane l. */
+    private final int[][] _positions;
+    /** _offsets[x][l] is the position minus ring setting of slot x in
+     *  lane l, modulo size. */
+    private final int[][] _offsets;
+    /** Plugboard of each lane, size entries each. */
+    private final int[] _plug;
+    /** Per-lane character being converted. */
+    private final int[] _chars;
+    /** True iff route() uses StateBatchVectors. */
+    private final boolean _vector;
+    /** Scratch gather indices for StateBatchVectors, if used. */
+    private final int[] _index;
+    /** Per-lane pre-step notch of the slot to the right. */
+    private final boolean[] _carry;
+}
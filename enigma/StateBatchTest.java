@@ -0,0 +1,189 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the StateBatch class.
+ *  @author Andrew Tom
+ */
+public class StateBatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void lanesMatchMachines() {
+        MachineSpec spec = MachineSpecTest.navalSpec();
+        String msg = MachineTest.longMessage().substring(0, 5000);
+        StateBatch batch = new StateBatch(spec, MachineSpecTest.SETTINGS);
+        String[] results = batch.convert(msg);
+        for (int l = 0; l < results.length; l += 1) {
+            String setting = MachineSpecTest.SETTINGS[l];
+            assertEquals(setting, spec.newMachine(setting).convert(msg),
+                         results[l]);
+        }
+    }
+
+    @Test
+    public void convertSomeLanes() {
+        MachineSpec spec = MachineSpecTest.navalSpec();
+        String[] settings = MachineSpecTest.SETTINGS;
+        StateBatch all = new StateBatch(spec, settings);
+        StateBatch some = new StateBatch(spec, settings);
+        int[] in = new int[300];
+        for (int i = 0; i < in.length; i += 1) {
+            in[i] = (i * 7) % spec.alphabet().size();
+        }
+        int[] expected = new int[settings.length * in.length];
+        int[] actual = new int[settings.length * in.length];
+        all.convert(in, in.length, expected, null);
+        some.convert(in, in.length, actual, null, 2);
+        for (int i = 0; i < 2 * in.length; i += 1) {
+            assertEquals(expected[i], actual[i]);
+        }
+        StateBatch fresh = new StateBatch(spec, settings);
+        for (int l = 2; l < settings.length; l += 1) {
+            for (int x = 0; x < spec.numRotors(); x += 1) {
+                assertEquals(fresh.position(l, x), some.position(l, x));
+            }
+        }
+    }
+
+    @Test
+    public void setReusesLanes() {
+        MachineSpec spec = MachineSpecTest.navalSpec();
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        StateBatch batch = new StateBatch(spec, 2);
+        String setting = "* C Gamma VI VII VIII ZZZZ (QW)";
+        batch.set(1, spec.parse(setting));
+        batch.set(0, spec.parse(MachineSpecTest.SETTINGS[0]));
+        String[] results = batch.convert(msg);
+        Machine m = spec.newMachine(setting);
+        assertEquals(m.convert(msg), results[1]);
+        for (int x = 1; x < 5; x += 1) {
+            assertEquals(m.rotorList().get(x).setting(), batch.position(1, x));
+        }
+    }
+
+    /** Return a spec over a 200-letter alphabet, too large for shifted
+     *  tables, with reflector R and moving rotors M1-M3 drawn from
+     *  RANDOM. */
+    private static MachineSpec largeSpec(Random random) {
+        char[] chars = new char[200];
+        for (int x = 0; x < chars.length; x += 1) {
+            chars[x] = (char) (0x100 + x);
+        }
+        Alphabet alpha = new Alphabet(new String(chars));
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        for (int r = 1; r <= 3; r += 1) {
+            rotors.add(new MovingRotor("M" + r, shuffled(alpha, random),
+                                       "" + chars[random.nextInt(200)]));
+        }
+        int[] reflect = new int[200];
+        for (int x = 0; x < 200; x += 2) {
+            reflect[x] = x + 1;
+            reflect[x + 1] = x;
+        }
+        rotors.add(new Reflector("R", new Permutation(alpha, reflect)));
+        return new MachineSpec(alpha, 4, 3, rotors);
+    }
+
+    @Test
+    public void largeAlphabet() {
+        Random random = new Random(61);
+        MachineSpec spec = largeSpec(random);
+        char[] chars = spec.alphabet().salphabet().toCharArray();
+        StringBuilder msg = new StringBuilder();
+        for (int x = 0; x < 3000; x += 1) {
+            msg.append(chars[random.nextInt(200)]);
+        }
+        String a = "* R M1 M2 M3 " + chars[5] + chars[199] + chars[198]
+            + " " + chars[7] + chars[1] + chars[150];
+        String b = "* R M3 M1 M2 " + chars[0] + chars[0] + chars[0];
+        String[] results = new StateBatch(spec, a, b).convert(msg.toString());
+        assertEquals(spec.newMachine(a).convert(msg.toString()), results[0]);
+        assertEquals(spec.newMachine(b).convert(msg.toString()), results[1]);
+    }
+
+    @Test
+    public void vectorMatchesScalar() {
+        Random random = new Random(19);
+        for (MachineSpec spec : new MachineSpec[] {
+                MachineSpecTest.navalSpec(), largeSpec(random) }) {
+            int lanes = 37;
+            StateBatch vector = new StateBatch(spec, lanes, true);
+            StateBatch scalar = new StateBatch(spec, lanes, false);
+            RotorSpec[] library = vector.library();
+            int[] rotors = new int[spec.numRotors()];
+            for (RotorSpec r : library) {
+                if (r.reflecting()) {
+                    rotors[0] = Arrays.asList(library).indexOf(r);
+                }
+            }
+            int size = spec.alphabet().size();
+            int[] plug = new int[size];
+            for (int x = 0; x < size; x += 1) {
+                plug[x] = x;
+            }
+            for (int l = 0; l < lanes; l += 1) {
+                int[] positions = new int[rotors.length];
+                int[] rings = new int[rotors.length];
+                for (int x = 0; x < rotors.length; x += 1) {
+                    positions[x] = random.nextInt(size);
+                    rings[x] = random.nextInt(size);
+                }
+                for (int x = 1; x < rotors.length; x += 1) {
+                    rotors[x] = movingOrFixed(library, spec, x, l);
+                }
+                vector.set(l, rotors, positions, rings, plug);
+                scalar.set(l, rotors, positions, rings, plug);
+            }
+            int[] in = new int[500];
+            for (int i = 0; i < in.length; i += 1) {
+                in[i] = random.nextInt(size);
+            }
+            int[] expected = new int[lanes * in.length];
+            int[] actual = new int[lanes * in.length];
+            scalar.convert(in, in.length, expected, null);
+            vector.convert(in, in.length, actual, null);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    /** Return the index in LIBRARY of a rotor that fits slot X of SPEC,
+     *  varied by LANE. */
+    private static int movingOrFixed(RotorSpec[] library, MachineSpec spec,
+                                     int x, int lane) {
+        boolean moving = x >= spec.numRotors() - spec.numPawls();
+        ArrayList<Integer> fits = new ArrayList<Integer>();
+        for (int r = 0; r < library.length; r += 1) {
+            if (!library[r].reflecting() && library[r].rotates() == moving) {
+                fits.add(r);
+            }
+        }
+        return fits.get((lane + x) % fits.size());
+    }
+
+    /** Return a random permutation of ALPHA drawn from RANDOM. */
+    private static Permutation shuffled(Alphabet alpha, Random random) {
+        int[] table = new int[alpha.size()];
+        for (int x = 0; x < table.length; x += 1) {
+            table[x] = x;
+        }
+        for (int x = table.length - 1; x > 0; x -= 1) {
+            int y = random.nextInt(x + 1);
+            int t = table[x];
+            table[x] = table[y];
+            table[y] = t;
+        }
+        return new Permutation(alpha, table);
+    }
+
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** The lane loops of StateBatch.route() written with the incubating
+ *  Vector API, so that each slot is applied to a whole vector of lanes
+ *  at once: the table indices are computed with vector arithmetic and
+ *  the wiring is read with one gather per vector.  This class needs the
+ *  module jdk.incubator.vector, both to compile and to load, and
+ *  StateBatch calls it only when that module is present (see
+ *  StateBatch.VECTOR); otherwise the scalar loops do all the work.
+ *  Each method handles the lanes that fill whole vectors and returns
+ *  the index of the first lane left for the scalar loop.
+ *  @author Andrew Tom
+ */
+final class StateBatchVectors {
+
+    /** Vector shape used for lanes. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Not instantiable. */
+    private StateBatchVectors() {
+    }
+
+    /** For lanes l from 0 up, set CHARS[l] to TABLES[BASE[l] + OFF[l] *
+     *  SIZE + CHARS[l]], using INDEX (at least LANES long) as scratch.
+     *  Return the first of the LANES lanes not done. */
+    static int routeShifted(int[] tables, int[] base, int[] off, int size,
+                            int[] chars, int[] index, int lanes) {
+        int bound = SPECIES.loopBound(lanes);
+        for (int l = 0; l < bound; l += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, off, l).mul(size)
+                .add(IntVector.fromArray(SPECIES, base, l))
+                .add(IntVector.fromArray(SPECIES, chars, l))
+                .intoArray(index, l);
+            IntVector.fromArray(SPECIES, tables, 0, index, l)
+                .intoArray(chars, l);
+        }
+        return bound;
+    }
+
+    /** For lanes l from 0 up, set CHARS[l] to the conversion of CHARS[l]
+     *  by the unshifted wiring at TABLES[BASE[l]] with offset OFF[l],
+     *  modulo SIZE, using INDEX (at least LANES long) as scratch.
+     *  Return the first of the LANES lanes not done. */
+    static int routeUnshifted(int[] tables, int[] base, int[] off,
+                              int size, int[] chars, int[] index,
+                              int lanes) {
+        int bound = SPECIES.loopBound(lanes);
+        for (int l = 0; l < bound; l += SPECIES.length()) {
+            IntVector o = IntVector.fromArray(SPECIES, off, l);
+            IntVector p = IntVector.fromArray(SPECIES, chars, l).add(o);
+            p = p.lanewise(VectorOperators.SUB, size,
+                           p.compare(VectorOperators.GE, size));
+            p.add(IntVector.fromArray(SPECIES, base, l)).intoArray(index, l);
+            p = IntVector.fromArray(SPECIES, tables, 0, index, l).sub(o);
+            p.lanewise(VectorOperators.ADD, size,
+                       p.compare(VectorOperators.LT, 0))
+                .intoArray(chars, l);
+        }
+        return bound;
+    }
+}
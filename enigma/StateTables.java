@@ -0,0 +1,256 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** A file of precomputed scrambler tables for every key of a KeySpace,
+ *  read through memory mapping.  The table of key k gives, for each
+ *  character c, what the rotors (without plugboard) convert c to with
+ *  the slots at key k's positions, i.e., MachineState.route() there.
+ *  The tables live in the file, not on the heap: lookups read the
+ *  mapped pages directly, and every process that opens the same file
+ *  shares one copy of it in the page cache.
+ *
+ *  A file records a fingerprint of the key space it was made for (ring
+ *  settings, slot counts and the names, kinds, wirings and notches of
+ *  the library rotors), and open() refuses a file made for another.  Alphabets of
+ *  up to 256 characters are supported, one byte per entry.
+ *
+ *  All numbers are big-endian.  The layout is
+ *  <pre>
+ *     int MAGIC, int VERSION, int alphabet size N,
+ *     long arrangements, long positions per arrangement,
+ *     int fingerprint, zeros up to byte DATA_START,
+ *     per key, in KeySpace order: byte[N] table.
+ *  </pre>
+ *  @author Andrew Tom
+ */
+final class StateTables implements Closeable {
+
+    /** First word of every file ("ENST"). */
+    static final int MAGIC = 0x454e5354;
+
+    /** Version of the layout written by this class. */
+    static final int VERSION = 2;
+
+    /** Offset of the first table, one page into the file. */
+    static final int DATA_START = 4096;
+
+    /** Largest part of the file mapped as one buffer. */
+    static final int SEGMENT = 1 << 30;
+
+    /** Write the tables of every key of KEYS to the file FILE, replacing
+     *  it atomically. */
+    static void write(KeySpace keys, Path file) {
+        write(keys, file, SEGMENT);
+    }
+
+    /** Write the tables of KEYS to FILE, mapping at most SEGMENTSIZE
+     *  bytes at a time. */
+    static void write(KeySpace keys, Path file, int segmentSize) {
+        int size = checkSize(keys);
+        long perSegment = segmentSize / size;
+        Path target = file.toAbsolutePath();
+        try {
+            Path tmp = Files.createTempFile(target.getParent(),
+                                            ".enigma", ".tmp");
+            try {
+                try (FileChannel channel =
+                         FileChannel.open(tmp, StandardOpenOption.READ,
+                                          StandardOpenOption.WRITE)) {
+                    ByteBuffer header = ByteBuffer.allocate(DATA_START);
+                    header.putInt(MAGIC).putInt(VERSION).putInt(size)
+                        .putLong(keys.size() / keys.positions())
+                        .putLong(keys.positions())
+                        .putInt(fingerprint(keys)).clear();
+                    channel.write(header, 0);
+                    fill(keys, channel, perSegment);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not write %s: %s", file,
+                                        excp.getMessage());
+        }
+    }
+
+    /** Write the tables of KEYS into CHANNEL, PERSEGMENT keys per mapped
+     *  segment. */
+    private static void fill(KeySpace keys, FileChannel channel,
+                             long perSegment) throws IOException {
+        int size = keys.spec().alphabet().size();
+        int[] positions = new int[keys.spec().numRotors()];
+        MachineState state = null;
+        int[] arrangement = null;
+        for (long first = 0; first < keys.size(); first += perSegment) {
+            long count = Math.min(perSegment, keys.size() - first);
+            MappedByteBuffer segment =
+                channel.map(FileChannel.MapMode.READ_WRITE,
+                            DATA_START + first * size, count * size);
+            for (long k = first; k < first + count; k += 1) {
+                if (keys.arrangement(k) != arrangement) {
+                    arrangement = keys.arrangement(k);
+                    state = newState(keys, arrangement);
+                }
+                keys.positions(k, positions);
+                state.setPositions(positions);
+                int at = (int) (k - first) * size;
+                for (int c = 0; c < size; c += 1) {
+                    segment.put(at + c, (byte) state.route(c));
+                }
+            }
+            segment.force();
+        }
+    }
+
+    /** Return a state of KEYS's spec with library rotors ARRANGEMENT,
+     *  KEYS's ring settings and no plugboard. */
+    private static MachineState newState(KeySpace keys, int[] arrangement) {
+        RotorSpec[] slots = new RotorSpec[arrangement.length];
+        for (int x = 0; x < slots.length; x += 1) {
+            slots[x] = keys.library()[arrangement[x]];
+        }
+        return new MachineState(keys.spec(), slots, new int[slots.length],
+                                keys.rings().clone(),
+                                new Permutation("", keys.spec().alphabet()));
+    }
+
+    /** Open the tables of KEYS in the file FILE, as written by
+     *  write(KEYS, FILE). */
+    static StateTables open(KeySpace keys, Path file) {
+        return new StateTables(keys, file, SEGMENT);
+    }
+
+    /** The tables of KEYS in FILE, mapped at most SEGMENTSIZE bytes per
+     *  buffer. */
+    StateTables(KeySpace keys, Path file, int segmentSize) {
+        _size = checkSize(keys);
+        _keys = keys.size();
+        _perSegment = segmentSize / _size;
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_START);
+            if (channel.size() != DATA_START + _keys * _size
+                || channel.read(header, 0) != DATA_START) {
+                throw EnigmaException.error("%s has the wrong size", file);
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != _size
+                || header.getLong() != _keys / keys.positions()
+                || header.getLong() != keys.positions()
+                || header.getInt() != fingerprint(keys)) {
+                throw EnigmaException.error("%s is not a table file for "
+                                            + "these keys", file);
+            }
+            int count = (int) ((_keys + _perSegment - 1) / _perSegment);
+            _segments = new MappedByteBuffer[count];
+            for (int s = 0; s < count; s += 1) {
+                long first = s * _perSegment;
+                long len = Math.min(_perSegment, _keys - first) * _size;
+                _segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                           DATA_START + first * _size, len);
+            }
+        } catch (IOException excp) {
+            throw EnigmaException.error("could not open %s: %s", file,
+                                        excp.getMessage());
+        }
+    }
+
+    /** Return the number of keys. */
+    long keys() {
+        return _keys;
+    }
+
+    /** Return the alphabet size, the length of each table. */
+    int size() {
+        return _size;
+    }
+
+    /** Return what the rotors at key KEY convert the alphabet index C
+     *  to. */
+    int convert(long key, int c) {
+        return _segments[(int) (key / _perSegment)]
+            .get((int) (key % _perSegment) * _size + c) & 0xff;
+    }
+
+    /** Fill OUT with the table of key KEY. */
+    void table(long key, int[] out) {
+        ByteBuffer segment = _segments[(int) (key / _perSegment)];
+        int at = (int) (key % _perSegment) * _size;
+        for (int c = 0; c < _size; c += 1) {
+            out[c] = segment.get(at + c) & 0xff;
+        }
+    }
+
+    /** Drop my mappings.  The pages are unmapped once the buffers are
+     *  garbage; lookups after close() fail. */
+    @Override
+    public void close() {
+        _segments = null;
+    }
+
+    /** Return the alphabet size of KEYS, checking that its entries fit
+     *  in a byte. */
+    private static int checkSize(KeySpace keys) {
+        int size = keys.spec().alphabet().size();
+        if (size > 256) {
+            throw EnigmaException.error("alphabet too large for tables");
+        }
+        return size;
+    }
+
+    /** Return a CRC-32 of everything about KEYS that the tables depend
+     *  on. */
+    private static int fingerprint(KeySpace keys) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+        MachineSpec spec = keys.spec();
+        int[] header = { spec.numRotors(), spec.numPawls() };
+        for (int[] ints : new int[][] { header, keys.rings() }) {
+            for (int i : ints) {
+                crc.update(buf.clear().putInt(i).flip());
+            }
+        }
+        int n = spec.alphabet().size();
+        for (RotorSpec r : keys.library()) {
+            crc.update(r.name().getBytes(StandardCharsets.UTF_8));
+            crc.update(r.reflecting() ? ConfigImage.REFLECTOR
+                       : r.rotates() ? ConfigImage.MOVING : ConfigImage.FIXED);
+            for (int i : r.permutation().forwardTable()) {
+                crc.update(buf.clear().putInt(i).flip());
+            }
+            long[] mask = new long[(n + Long.SIZE - 1) / Long.SIZE];
+            for (int x = 0; x < n; x += 1) {
+                if (r.atNotch(x)) {
+                    mask[x / Long.SIZE] |= 1L << (x % Long.SIZE);
+                }
+            }
+            for (long word : mask) {
+                crc.update(buf.clear().putLong(word).flip());
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of keys. */
+    private final long _keys;
+    /** Keys per mapped segment. */
+    private final long _perSegment;
+    /** The mapped tables, _perSegment keys each. */
+    private MappedByteBuffer[] _segments;
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static enigma.KeySearchTest.smallSpec;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the StateTables class.
+ *  @author Andrew Tom
+ */
+public class StateTablesTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Check that TABLES holds the scrambler of every key of KEYS. */
+    private void checkTables(KeySpace keys, StateTables tables) {
+        MachineSpec spec = keys.spec();
+        int size = spec.alphabet().size();
+        assertEquals(keys.size(), tables.keys());
+        assertEquals(size, tables.size());
+        int[] table = new int[size];
+        for (long k = 0; k < keys.size(); k += 97) {
+            MachineState state = spec.parse(keys.setting(k, "")).newState();
+            tables.table(k, table);
+            for (int c = 0; c < size; c += 1) {
+                assertEquals(state.route(c), tables.convert(k, c));
+                assertEquals(state.route(c), table[c]);
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        KeySpace keys = new KeySpace(smallSpec(), "");
+        Path file = Files.createTempFile("tables", ".bin");
+        try {
+            StateTables.write(keys, file);
+            assertEquals(StateTables.DATA_START + keys.size() * 26,
+                         Files.size(file));
+            try (StateTables tables = StateTables.open(keys, file)) {
+                checkTables(keys, tables);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void smallSegments() throws IOException {
+        KeySpace keys = new KeySpace(smallSpec(), "BX");
+        Path file = Files.createTempFile("tables", ".bin");
+        try {
+            StateTables.write(keys, file, 1000);
+            checkTables(keys, new StateTables(keys, file, 777));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void wrongKeys() throws IOException {
+        KeySpace keys = new KeySpace(smallSpec(), "");
+        Path file = Files.createTempFile("tables", ".bin");
+        try {
+            StateTables.write(keys, file);
+            try {
+                StateTables.open(new KeySpace(smallSpec(), "AB"), file);
+                fail("tables for other rings accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void wrongNotches() throws IOException {
+        KeySpace keys = new KeySpace(smallSpec(), "");
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("B",
+            new Permutation(NAVALA.get("B"), UPPER)));
+        String[][] moving = {{"I", "R"}, {"II", "E"}, {"III", "V"}};
+        for (String[] r : moving) {
+            rotors.add(new MovingRotor(r[0],
+                new Permutation(NAVALA.get(r[0]), UPPER), r[1]));
+        }
+        MachineSpec other = new MachineSpec(UPPER, 3, 2, rotors);
+        Path file = Files.createTempFile("tables", ".bin");
+        try {
+            StateTables.write(keys, file);
+            try {
+                StateTables.open(new KeySpace(other, ""), file);
+                fail("tables for other notches accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static enigma.MachineTest.navalMachine;
+
+/** The suite of all JUnit tests for the streaming adapters.
+ *  @author Andrew Tom
+ */
+public class StreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Plugboard used throughout. */
+    private static final String PLUGS = "(HQ) (EX) (IP) (TR) (BY)";
+
+    @Test
+    public void bulkConvert() {
+        Machine m = navalMachine("AXLE", PLUGS);
+        char[] in = "xxFROMHISSHOULDER".toCharArray();
+        char[] out = new char[15];
+        m.convert(in, 2, 15, out, 0);
+        assertEquals("QVPQSOKOILPUBKJ", new String(out));
+    }
+
+    @Test
+    public void readerConverts() throws IOException {
+        Machine m = navalMachine("AXLE", PLUGS);
+        Reader r = new EnigmaReader(new StringReader("FROMHIS\nSHOULDER"),
+                                    m, true);
+        StringBuilder result = new StringBuilder();
+        char[] buf = new char[3];
+        for (int n = r.read(buf); n >= 0; n = r.read(buf)) {
+            result.append(buf, 0, n);
+        }
+        assertEquals("QVPQSOK\nOILPUBKJ", result.toString());
+    }
+
+    @Test
+    public void writerConverts() throws IOException {
+        Machine m = navalMachine("AXLE", PLUGS);
+        StringWriter sink = new StringWriter();
+        Writer w = new EnigmaWriter(sink, m);
+        w.write("FROMH");
+        w.write('I');
+        w.write("SSHOULDER".toCharArray());
+        w.flush();
+        assertEquals("QVPQSOKOILPUBKJ", sink.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void writerRejectsOthers() throws IOException {
+        Machine m = navalMachine("AXLE", PLUGS);
+        new EnigmaWriter(new StringWriter(), m).write("FROM HIS");
+    }
+
+    @Test
+    public void byteStreamsConvert() throws IOException {
+        Machine enc = navalMachine("AXLE", PLUGS);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream out = new EnigmaOutputStream(sink, enc, true);
+        out.write("FROMHIS SHOULDER".getBytes("ISO-8859-1"));
+        out.flush();
+        assertEquals("QVPQSOK OILPUBKJ", sink.toString("ISO-8859-1"));
+
+        Machine dec = navalMachine("AXLE", PLUGS);
+        InputStream in = new EnigmaInputStream(
+            new ByteArrayInputStream(sink.toByteArray()), dec, true);
+        byte[] plain = new byte[16];
+        int n = in.read(plain, 0, 16);
+        assertEquals(16, n);
+        assertEquals("FROMHIS SHOULDER", new String(plain, "ISO-8859-1"));
+    }
+
+}
@@ -13,7 +13,24 @@ public class UnitTest {
         System.exit(textui.runClasses(PermutationTest.class,
                                       MovingRotorTest.class,
                 AllRotorTests.class,
-            AlphabetTest.class));
+            AlphabetTest.class,
+            MachineTest.class,
+            StreamTest.class,
+            GroupedWriterTest.class,
+            MappedIOTest.class,
+            MachineSpecTest.class,
+            EnigmaBatchTest.class,
+            ConfigParserTest.class,
+            ConfigImageTest.class,
+            MetricsTest.class,
+            StateBatchTest.class,
+            KeySearchTest.class,
+            BombeTest.class,
+            NGramsTest.class,
+            PlugSolverTest.class,
+            StateTablesTest.class,
+            EnigmaServerTest.class,
+            EnigmaProcessorTest.class));
     }
 
 }